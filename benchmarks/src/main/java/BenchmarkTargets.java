@@ -0,0 +1,98 @@
+import java.util.function.LongSupplier;
+
+/*
+The operations the benchmarks measure, one LongSupplier per operation and position. This class is in
+the default package so it can reach the engine's classes, which are too. JMH won't take benchmark
+classes in the default package, and classes in a named package can't name default-package ones, so
+the benchmarks (package benchmarks) fetch these suppliers by reflection once, in their setup.
+ */
+public final class BenchmarkTargets {
+    // representative positions: opening, open middlegame, closed middlegame, tactical, endgames
+    static final String[] FENS = {
+            Position.START_FEN,
+            "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+            "r1bq1rk1/pp2bppp/2n1pn2/3p4/2PP4/2N1PN2/PP3PPP/R2QKB1R w KQ - 0 8",
+            "r4rk1/1pp1qppp/p1np1n2/2b1p1B1/2B1P1b1/P1NP1N2/1PP1QPPP/R4RK1 w - - 0 10",
+            "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1",
+            "8/5pk1/6p1/3R4/7P/6P1/r4PK1/8 b - - 0 40",
+    };
+
+    static {
+        System.setProperty("java.awt.headless", "true");
+        Attacks.init();
+    }
+
+    private BenchmarkTargets() {}
+
+    // Board.get_legal_moves for every piece of the side to move
+    public static LongSupplier board_legal_moves(int fen) {
+        Engine engine = new Engine(800, 800, null, 1, 1);
+        Board board = new Board(800, 800, null, engine);
+        board.get_position().set_fen(FENS[fen]);
+        Piece[][] grid = board.get_position().to_grid();
+        int color = board.get_side_to_move();
+        return () -> {
+            long count = 0;
+            for (Piece[] rank : grid) {
+                for (Piece piece : rank) {
+                    if (piece != null && piece.color == color) count += board.get_legal_moves(piece, color).size();
+                }
+            }
+            return count;
+        };
+    }
+
+    public static LongSupplier king_in_check(int fen) {
+        Engine engine = new Engine(800, 800, null, 1, 1);
+        Board board = new Board(800, 800, null, engine);
+        Position position = new Position(FENS[fen]);
+        int color = position.color_to_move();
+        return () -> board.king_in_check(position, color) ? 1 : 0;
+    }
+
+    public static LongSupplier generate_moves(int fen) {
+        Position position = new Position(FENS[fen]);
+        int[] moves = new int[MoveBuffer.MAX_MOVES];
+        return () -> MoveGen.legal_moves(position, moves, 0);
+    }
+
+    // plays and takes back every legal move (what Board.test_move_piece used to do with grid copies)
+    public static LongSupplier make_unmake(int fen) {
+        Position position = new Position(FENS[fen]);
+        int[] moves = new int[MoveBuffer.MAX_MOVES];
+        int count = MoveGen.legal_moves(position, moves, 0);
+        return () -> {
+            long keys = 0;
+            for (int i = 0; i < count; i++) {
+                position.make(moves[i]);
+                keys ^= position.key();
+                position.unmake(moves[i]);
+            }
+            return keys;
+        };
+    }
+
+    public static LongSupplier material_eval(int fen) {
+        Engine engine = new Engine(800, 800, null, 1, 1);
+        Position position = new Position(FENS[fen]);
+        return () -> Double.doubleToRawLongBits(engine.material_eval(position));
+    }
+
+    // the full evaluation, with a warm pawn table as in a search
+    public static LongSupplier evaluate(int fen) {
+        Position position = new Position(FENS[fen]);
+        PawnTable pawns = new PawnTable(1 << 10);
+        return () -> Evaluation.evaluate(position, pawns);
+    }
+
+    // a fixed-depth search on one thread from an empty table; returns the nodes searched
+    public static LongSupplier search(int fen, int depth) {
+        TranspositionTable tt = new TranspositionTable(16);
+        Search search = new Search(null, tt);
+        return () -> {
+            tt.clear();
+            search.set_position(new Position(FENS[fen]));
+            return search.think(SearchLimits.depth(depth)).nodes;
+        };
+    }
+}
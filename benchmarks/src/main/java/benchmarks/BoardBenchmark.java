@@ -0,0 +1,50 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/*
+Move generation and the Board methods the UI calls, per position of the corpus
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BoardBenchmark {
+    @Param({"0", "1", "2", "3", "4", "5"})
+    int position;
+
+    private LongSupplier board_legal_moves, king_in_check, generate_moves, make_unmake;
+
+    @Setup
+    public void setup() {
+        board_legal_moves = Targets.get("board_legal_moves", position);
+        king_in_check = Targets.get("king_in_check", position);
+        generate_moves = Targets.get("generate_moves", position);
+        make_unmake = Targets.get("make_unmake", position);
+    }
+
+    @Benchmark
+    public long board_get_legal_moves() {
+        return board_legal_moves.getAsLong();
+    }
+
+    @Benchmark
+    public long board_king_in_check() {
+        return king_in_check.getAsLong();
+    }
+
+    @Benchmark
+    public long movegen_legal_moves() {
+        return generate_moves.getAsLong();
+    }
+
+    @Benchmark
+    public long make_unmake_all_moves() {
+        return make_unmake.getAsLong();
+    }
+}
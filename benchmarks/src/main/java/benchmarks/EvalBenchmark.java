@@ -0,0 +1,35 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EvalBenchmark {
+    @Param({"0", "1", "2", "3", "4", "5"})
+    int position;
+
+    private LongSupplier material_eval, evaluate;
+
+    @Setup
+    public void setup() {
+        material_eval = Targets.get("material_eval", position);
+        evaluate = Targets.get("evaluate", position);
+    }
+
+    @Benchmark
+    public long engine_material_eval() {
+        return material_eval.getAsLong();
+    }
+
+    @Benchmark
+    public long evaluation_evaluate() {
+        return evaluate.getAsLong();
+    }
+}
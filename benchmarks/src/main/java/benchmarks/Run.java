@@ -0,0 +1,30 @@
+package benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/*
+Entry point of benchmarks.jar. Takes the usual JMH command line, but defaults to writing JSON results
+(jmh-result.json) and to running the GC profiler, so every run records allocations per operation and
+can be compared with earlier runs.
+    java -jar benchmarks/target/benchmarks.jar [JMH options] [benchmark regex]
+ */
+public final class Run {
+    private Run() {}
+
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions command_line = new CommandLineOptions(args);
+        Options options = new OptionsBuilder()
+                .parent(command_line)
+                .resultFormat(command_line.getResultFormat().orElse(ResultFormatType.JSON))
+                .result(command_line.getResult().orElse("jmh-result.json"))
+                .addProfiler(GCProfiler.class)
+                .jvmArgsAppend("-Djava.awt.headless=true")
+                .build();
+        new Runner(options).run();
+    }
+}
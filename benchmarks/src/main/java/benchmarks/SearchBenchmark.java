@@ -0,0 +1,35 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/*
+Time to reach a fixed depth on one thread, starting from an empty transposition table each time
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SearchBenchmark {
+    @Param({"0", "1", "2", "3", "4", "5"})
+    int position;
+
+    @Param({"8"})
+    int depth;
+
+    private LongSupplier search;
+
+    @Setup
+    public void setup() {
+        search = Targets.get("search", position, depth);
+    }
+
+    @Benchmark
+    public long fixed_depth_search() {
+        return search.getAsLong();
+    }
+}
@@ -0,0 +1,26 @@
+package benchmarks;
+
+import java.lang.reflect.Method;
+import java.util.function.LongSupplier;
+
+/*
+Looks up an operation in the default-package BenchmarkTargets by name. Only called from @Setup, so the
+reflection is never measured
+ */
+final class Targets {
+    private Targets() {}
+
+    static LongSupplier get(String name, Object... args) {
+        try {
+            Class<?> targets = Class.forName("BenchmarkTargets");
+            for (Method method : targets.getMethods()) {
+                if (method.getName().equals(name) && method.getParameterCount() == args.length) {
+                    return (LongSupplier) method.invoke(null, args);
+                }
+            }
+            throw new IllegalArgumentException("no benchmark target " + name);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("can't set up benchmark target " + name, e);
+        }
+    }
+}
@@ -0,0 +1,231 @@
+/*
+Attack tables, built once when the class is loaded. Knights, kings and pawns get one mask per square.
+Sliding pieces use either magic bitboards (a multiply and shift into a shared table) or plain ray
+tables, where the ray is cut at the first blocker. Pick with -Dchess.attacks=magic|rays; only the
+chosen slider tables are built so the startup cost of each can be compared.
+ */
+public final class Attacks {
+    public static final boolean USE_MAGICS = !"rays".equals(System.getProperty("chess.attacks", "magic"));
+
+    public static final long[] KNIGHT = new long[64];
+    public static final long[] KING = new long[64];
+    public static final long[][] PAWN = new long[2][64];
+    // for two squares on one rank, file or diagonal: the squares strictly between them, and the whole
+    // line through both; 0 for squares that aren't aligned
+    public static final long[][] BETWEEN = new long[64][64];
+    public static final long[][] LINE = new long[64][64];
+
+    // ray directions; the first four run towards higher square indices
+    private static final int EAST = 0, SOUTH = 1, SOUTH_EAST = 2, SOUTH_WEST = 3;
+    private static final int WEST = 4, NORTH = 5, NORTH_WEST = 6, NORTH_EAST = 7;
+    private static final int[] DX = {1, 0, 1, -1, -1, 0, -1, 1};
+    private static final int[] DY = {0, 1, 1, 1, 0, -1, -1, -1};
+    private static final int[] ROOK_DIRECTIONS = {EAST, SOUTH, WEST, NORTH};
+    private static final int[] BISHOP_DIRECTIONS = {SOUTH_EAST, SOUTH_WEST, NORTH_WEST, NORTH_EAST};
+    private static final long[][] RAYS = new long[8][64];
+
+    private static final long[] ROOK_MASK = new long[64];
+    private static final int[] ROOK_SHIFT = new int[64];
+    private static final int[] ROOK_OFFSET = new int[64];
+    private static long[] rook_table;
+
+    private static final long[] BISHOP_MASK = new long[64];
+    private static final int[] BISHOP_SHIFT = new int[64];
+    private static final int[] BISHOP_OFFSET = new int[64];
+    private static long[] bishop_table;
+
+    /*
+    Magic multipliers, one per square. Found offline by trying random sparse numbers until every
+    occupancy subset of the square's mask maps to an index that is free or holds the same attack set.
+    Searching for them at startup costs most of a second, so the results are kept here
+     */
+    private static final long[] ROOK_MAGIC = {
+            0x2080002080400010L, 0x00C0002001401000L, 0x2100110008402002L, 0x0880080081041000L,
+            0x0200020020041008L, 0x2300040008010012L, 0x0C00283004008201L, 0x0180010000407A80L,
+            0x0168800080400020L, 0x0010400040201000L, 0x1001002001001048L, 0x1001002408100100L,
+            0x0801000408010012L, 0x4001000209000400L, 0x08A20004C8020001L, 0x2002801145002280L,
+            0x0080860021004200L, 0x001000C009402002L, 0x00B0002004002800L, 0x100A808010020800L,
+            0x8101010008000410L, 0x0244008002000480L, 0x0000040010810208L, 0x2000020000448534L,
+            0x4104400480008033L, 0x0000810100204000L, 0x0440430900200010L, 0x4600240900100100L,
+            0x0060080080040080L, 0x0001000300080400L, 0x0004084400011002L, 0x0023040200008041L,
+            0x0580050043002080L, 0x0400804002802008L, 0x0001002001004010L, 0x1000200901001000L,
+            0x4410800801800C00L, 0xA012003806001004L, 0x0020100104008802L, 0x0004808402000041L,
+            0x0010400170898000L, 0x0080500020004004L, 0x1040408012020020L, 0x8010040008004040L,
+            0x2001080100110004L, 0x0000020004008080L, 0x0021010810040002L, 0x0800008C43020024L,
+            0x0000800021005100L, 0x0070201040008080L, 0x0000D04282006A00L, 0x0010014400080240L,
+            0x0001080110050100L, 0x0012000810240600L, 0x0402000801040200L, 0x028100108A004100L,
+            0x0050800300102045L, 0x8208210040120882L, 0x8010600101183441L, 0x020B000910006045L,
+            0x0241001002480005L, 0x0081000400880241L, 0x0000009008024124L, 0x0048122980410402L
+    };
+    private static final long[] BISHOP_MAGIC = {
+            0x0020425028410042L, 0x2060013202004100L, 0x129004108020C000L, 0x0048208020100480L,
+            0x0504042000601140L, 0x0206089208000001L, 0x0020410808402482L, 0x1101041482011001L,
+            0x0000A08810210040L, 0x2028E00C04107141L, 0x1202040820810208L, 0x4022482088200001L,
+            0x04080C1420E80464L, 0x80108C9004A00014L, 0x0012050801900800L, 0x0410C42201242000L,
+            0x000A024008082080L, 0x008210D010020880L, 0x0890000101002100L, 0x1108000C82004000L,
+            0x4001008820080000L, 0x090100A808980400L, 0x2004004900880466L, 0x1902000C4900C800L,
+            0x0482420010900200L, 0x0408200002420208L, 0x00A0880910164090L, 0x0084080000202040L,
+            0x8284040000410040L, 0x800082000B013080L, 0x4402008002181140L, 0x4200420440410400L,
+            0x1001209070200406L, 0x645404C410023000L, 0x0000414040180211L, 0x2004020080080080L,
+            0x4004064200040108L, 0x2080A10100021000L, 0x0009480080010C01L, 0x5008020084004044L,
+            0x020A096008082160L, 0x6822009220202820L, 0x000D222208014044L, 0x0418004200800802L,
+            0x0400120202020410L, 0x0C02542802000521L, 0x722108088D004082L, 0x4842009400800101L,
+            0x0014008208202880L, 0x00A20100C2100002L, 0x6500C10080900200L, 0x0000100042088008L,
+            0x1B4081401041080CL, 0x0082450890310040L, 0x8010A04811085000L, 0x0094102A20510004L,
+            0x1000110101504000L, 0x0018004400880802L, 0x04001221A4022202L, 0x0808010800420202L,
+            0x0082000040450100L, 0x00004C0810814209L, 0x1200206001410100L, 0x0220010102140048L
+    };
+
+    // how long building the tables took, for comparing the two slider modes
+    public static final long INIT_NANOS;
+
+    static {
+        long start = System.nanoTime();
+        for (int square = 0; square < 64; square++) {
+            long b = 1L << square;
+            KNIGHT[square] = Bitboards.knight_attacks(b);
+            KING[square] = Bitboards.king_attacks(b);
+            PAWN[Position.WHITE_SIDE][square] = Bitboards.pawn_attacks(b, Position.WHITE_SIDE);
+            PAWN[Position.BLACK_SIDE][square] = Bitboards.pawn_attacks(b, Position.BLACK_SIDE);
+            for (int dir = 0; dir < 8; dir++) {
+                RAYS[dir][square] = walk(square, 0L, DX[dir], DY[dir]);
+            }
+        }
+        for (int square = 0; square < 64; square++) {
+            for (int dir = 0; dir < 8; dir++) {
+                // the opposite direction is dir ^ 4
+                long line = RAYS[dir][square] | RAYS[dir ^ 4][square] | (1L << square);
+                for (long ray = RAYS[dir][square]; ray != 0; ray &= ray - 1) {
+                    int target = Long.numberOfTrailingZeros(ray);
+                    BETWEEN[square][target] = RAYS[dir][square] & ~RAYS[dir][target] & ~(1L << target);
+                    LINE[square][target] = line;
+                }
+            }
+        }
+        if (USE_MAGICS) {
+            rook_table = init_magics(true, ROOK_MASK, ROOK_MAGIC, ROOK_SHIFT, ROOK_OFFSET);
+            bishop_table = init_magics(false, BISHOP_MASK, BISHOP_MAGIC, BISHOP_SHIFT, BISHOP_OFFSET);
+        }
+        INIT_NANOS = System.nanoTime() - start;
+    }
+
+    private Attacks() {}
+
+    // forces the tables to be built, so the cost lands at startup instead of on the first move
+    public static void init() {}
+
+    // which slider tables are in use and how long building all the tables took, for the benchmark reports
+    public static String describe() {
+        return String.format("attacks %s, tables built in %.2f ms", USE_MAGICS ? "magic" : "rays", INIT_NANOS / 1e6);
+    }
+
+    public static long rook(int square, long occupied) {
+        if (USE_MAGICS) {
+            return rook_table[ROOK_OFFSET[square]
+                    + (int) (((occupied & ROOK_MASK[square]) * ROOK_MAGIC[square]) >>> ROOK_SHIFT[square])];
+        }
+        return ray(EAST, square, occupied) | ray(SOUTH, square, occupied)
+             | ray(WEST, square, occupied) | ray(NORTH, square, occupied);
+    }
+
+    public static long bishop(int square, long occupied) {
+        if (USE_MAGICS) {
+            return bishop_table[BISHOP_OFFSET[square]
+                    + (int) (((occupied & BISHOP_MASK[square]) * BISHOP_MAGIC[square]) >>> BISHOP_SHIFT[square])];
+        }
+        return ray(SOUTH_EAST, square, occupied) | ray(SOUTH_WEST, square, occupied)
+             | ray(NORTH_WEST, square, occupied) | ray(NORTH_EAST, square, occupied);
+    }
+
+    public static long queen(int square, long occupied) {
+        return rook(square, occupied) | bishop(square, occupied);
+    }
+
+    /*
+    Ray from the table, cut off behind the nearest blocker. For rays running towards higher indices the
+    nearest blocker is the lowest set bit, otherwise the highest
+     */
+    private static long ray(int dir, int square, long occupied) {
+        long attacks = RAYS[dir][square];
+        long blockers = attacks & occupied;
+        if (blockers != 0) {
+            int blocker = dir < WEST ? Long.numberOfTrailingZeros(blockers) : 63 - Long.numberOfLeadingZeros(blockers);
+            attacks ^= RAYS[dir][blocker];
+        }
+        return attacks;
+    }
+
+    /*
+    Walks one direction from the square until it runs off the board or hits a piece. The blocking
+    square is included so captures fall out of the same mask. Only used to build the tables
+     */
+    private static long walk(int square, long occupied, int dx, int dy) {
+        long attacks = 0L;
+        int x = (square & 7) + dx, y = (square >>> 3) + dy;
+        while (x >= 0 && x <= 7 && y >= 0 && y <= 7) {
+            long b = 1L << (y * 8 + x);
+            attacks |= b;
+            if ((occupied & b) != 0) break;
+            x += dx;
+            y += dy;
+        }
+        return attacks;
+    }
+
+    private static long slow_attacks(boolean rook, int square, long occupied) {
+        long attacks = 0L;
+        for (int dir : rook ? ROOK_DIRECTIONS : BISHOP_DIRECTIONS) {
+            attacks |= walk(square, occupied, DX[dir], DY[dir]);
+        }
+        return attacks;
+    }
+
+    // the squares whose occupancy matters: the rays without the board edge they run into
+    private static long relevant_mask(boolean rook, int square) {
+        int x = square & 7, y = square >>> 3;
+        long mask = slow_attacks(rook, square, 0L);
+        long files = 0L, ranks = 0L;
+        if (x != 0) files |= Bitboards.FILE_A;
+        if (x != 7) files |= Bitboards.FILE_H;
+        if (y != 0) ranks |= Bitboards.RANK_8;
+        if (y != 7) ranks |= Bitboards.RANK_1;
+        return mask & ~files & ~ranks;
+    }
+
+    /*
+    Fills the shared lookup table for one slider type. Each square gets a slice of the table sized for
+    every subset of its mask; the magic multiply-and-shift turns an occupancy into an index in that slice
+     */
+    private static long[] init_magics(boolean rook, long[] masks, long[] magics, int[] shifts, int[] offsets) {
+        int size = 0;
+        for (int square = 0; square < 64; square++) {
+            masks[square] = relevant_mask(rook, square);
+            size += 1 << Long.bitCount(masks[square]);
+        }
+        long[] table = new long[size];
+
+        int offset = 0;
+        for (int square = 0; square < 64; square++) {
+            long mask = masks[square];
+            int bits = Long.bitCount(mask);
+            shifts[square] = 64 - bits;
+            offsets[square] = offset;
+
+            // enumerate every subset of the mask (carry-rippler)
+            long subset = 0L;
+            do {
+                long attacks = slow_attacks(rook, square, subset);
+                int index = offset + (int) ((subset * magics[square]) >>> shifts[square]);
+                // a slider always attacks at least one square, so 0 marks a free slot
+                if (table[index] != 0 && table[index] != attacks) {
+                    throw new IllegalStateException("Bad magic for square " + square);
+                }
+                table[index] = attacks;
+                subset = (subset - mask) & mask;
+            } while (subset != 0);
+
+            offset += 1 << bits;
+        }
+        return table;
+    }
+}
@@ -0,0 +1,62 @@
+/*
+Helpers for 64-bit bitboards. Square indices follow the Piece[][] board: square = rank * 8 + file,
+where rank 0 is the top of the board (black's back rank) and file 0 is the A file. So a8 = 0 and h1 = 63.
+ */
+public final class Bitboards {
+    public static final long FILE_A = 0x0101010101010101L;
+    public static final long FILE_H = FILE_A << 7;
+    public static final long NOT_FILE_A = ~FILE_A;
+    public static final long NOT_FILE_H = ~FILE_H;
+    public static final long NOT_FILE_AB = ~(FILE_A | (FILE_A << 1));
+    public static final long NOT_FILE_GH = ~(FILE_H | (FILE_H >>> 1));
+
+    // ranks as seen by the players, not by the array index
+    public static final long RANK_8 = 0xFFL;
+    public static final long RANK_7 = RANK_8 << 8;
+    public static final long RANK_2 = RANK_8 << 48;
+    public static final long RANK_1 = RANK_8 << 56;
+
+    private Bitboards() {}
+
+    public static long bit(int square) {
+        return 1L << square;
+    }
+
+    public static int lsb(long bb) {
+        return Long.numberOfTrailingZeros(bb);
+    }
+
+    public static int count(long bb) {
+        return Long.bitCount(bb);
+    }
+
+    // "north" is towards rank 8, which is towards index 0
+    public static long north(long bb) { return bb >>> 8; }
+    public static long south(long bb) { return bb << 8; }
+    public static long east(long bb)  { return (bb & NOT_FILE_H) << 1; }
+    public static long west(long bb)  { return (bb & NOT_FILE_A) >>> 1; }
+
+    public static long knight_attacks(long bb) {
+        return ((bb & NOT_FILE_H) >>> 15) | ((bb & NOT_FILE_A) >>> 17)
+             | ((bb & NOT_FILE_GH) >>> 6) | ((bb & NOT_FILE_AB) >>> 10)
+             | ((bb & NOT_FILE_A) << 15)  | ((bb & NOT_FILE_H) << 17)
+             | ((bb & NOT_FILE_AB) << 6)  | ((bb & NOT_FILE_GH) << 10);
+    }
+
+    public static long king_attacks(long bb) {
+        long sides = east(bb) | west(bb);
+        bb |= sides;
+        return sides | north(bb) | south(bb);
+    }
+
+    /*
+    Squares attacked by the pawns in bb. White pawns attack towards rank 8 (lower indices),
+    black pawns towards rank 1
+     */
+    public static long pawn_attacks(long bb, int side) {
+        if (side == Position.WHITE_SIDE) {
+            return north(east(bb)) | north(west(bb));
+        }
+        return south(east(bb)) | south(west(bb));
+    }
+}
@@ -4,27 +4,40 @@ import javax.sound.sampled.Clip;
 import javax.swing.*;
 import java.awt.*;
 import java.awt.event.*;
+import java.awt.image.BufferedImage;
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.Map;
 import java.util.Objects;
 
 @SuppressWarnings("SpellCheckingInspection")
 public class Board extends JPanel implements MouseListener, MouseMotionListener, KeyListener {
+    // paint objects, made once instead of on every paint
+    private static final String[] FILES = {"A", "B", "C", "D", "E", "F", "G", "H"};
+    private static final Color LIGHT_SQUARE = new Color(231, 214, 185);
+    private static final Color DARK_SQUARE = new Color(115, 109, 171);
+    private static final Color HIGHLIGHT = new Color(0x7CFF3131, true);
+    private static final Font COORDINATES_FONT = new Font(Font.SANS_SERIF, Font.PLAIN, 12);
+    private static final int DOT_SIZE = 20;
+
     int square_width = 75, square_height = 75;
     Frame parent;
     private Graphics2D g2d;
+    private Position position;
+    // view of the position for painting, rebuilt from it whenever a move is applied
     private Piece[][] board;
     private Point curr_click;
     private Piece selected_piece = null;
-    private int side_to_move = Piece.WHITE;
+    // legal moves of the selected piece, shared by painting and clicks. Keyed by the position's hash and the
+    // piece's square, and dropped when a move is applied, so a repaint never generates moves
+    private long cached_key;
+    private int cached_square = -1;
+    private ArrayList<Move> cached_moves = new ArrayList<>();
+    // the squares and coordinates, which never change; drawn once and copied in on every paint
+    private BufferedImage background;
 
-    private final HashMap<Character, Point> piece_map = new HashMap<>();
-    private final HashMap<Character, Point> test_piece_map = new HashMap<>();
     private final Engine engine;
 
     public int get_side_to_move() {
-        return side_to_move;
+        return position.color_to_move();
     }
     Board(int parent_width, int parent_height, Frame parent, Engine engine) {
         setLocation((parent_width - square_width*8)/2, (parent_height-square_height*8)/2 - 10);
@@ -44,623 +57,164 @@ public class Board extends JPanel implements MouseListener, MouseMotionListener,
     }
 
     private void init_board() {
-        String fen = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR";
-
-        board = new Piece[8][8];
-        int file = 0, rank = 0;
-        for (char c: fen.toCharArray()) {
-            if (c == '/') {
-                file = 0; rank += 1;
-                continue;
-            }
-
-            // CHAR IS A NUMBER => skip some squares
-            if ((int) c >= 48 && (int) c <= 57) {
-                int shift = (int) c - 48;
-
-                if (shift == 8) {
-                    file += 7;
-                } else {
-                    file += Math.max(shift, 1); // at minimum needs to move x over by 1
-                }
-
-                continue;
-            }
-
-            int color = 0;
-            // UPPERCASE => white
-            if ((int) c >= 65 && (int) c <= 90) { color = Piece.WHITE; }
-            // LOWERCASE => black
-            else if ((int) c >= 97 && (int) c <= 122) { color = Piece.BLACK; }
-
-            Piece piece = new Piece(rank, file, c, color);
-            board[rank][file] = piece;
-            piece_map.put(c, piece.get_point());
-
-            file += 1;
-        }
+        position = new Position(Position.START_FEN);
+        board = position.to_grid();
         repaint();
     }
 
-    private Piece piece_from_id(Piece[][] board, HashMap<Character, Point> piece_map, char id) {
-        return board[piece_map.get(id).y][piece_map.get(id).x];
-    }
-
     /*
-    Exapnds out from the given king in every possible attacking direction. If a piece of the correct type
-    is present, that means the king is being attacked
+    Is the king of the given color attacked on the given position?
+    * Takes a position (not just this board's) so this code can be used to check whether a move is legal
      */
-    public boolean king_in_check(Piece[][] board, HashMap<Character, Point> map, int king_side) {
-        /*
-        Expand out from king in all possible directions to see if it's being attacked
-        * Uses a given board (so this code can be used to check whether a move is legal)
-         */
-
-        Piece king = piece_from_id(board, map, king_side == Piece.WHITE ? 'K' : 'k');
-        int y = king.rank;
-        int x = king.file;
-
-        int[] knight_dy =   {2,  2, 1, -1,  1, -1, -2, -2};
-        int[] knight_dx =   {1, -1, 2,  2, -2, -2,  1, -1};
-        int[] rook_dx   =   {1, -1, 0,  0};
-        int[] rook_dy   =   {0,  0, 1, -1};
-        int[] bishop_dx =   {1,  1, -1, -1};
-        int[] bishop_dy =   {1, -1,  1, -1};
-        int[] pawn_dx   =   {1, -1};
-        int[] pawn_dy   =   {1,  1};
-
-        int[][] all_dy = {
-                knight_dy, rook_dy, bishop_dy, pawn_dy
-        };
-        int[][] all_dx = {
-                knight_dx, rook_dx, bishop_dx, pawn_dx
-        };
-
-        for (int i = 0; i < all_dy.length; i++) {
-            int [] dys = all_dy[i], dxs = all_dx[i];
-            for (int j = 0; j < dys.length; j++) {
-                int dx = dxs[j];
-                int dy = dys[j];
-
-                int scale = 1;
-                while (true) {
-                    //target x and y
-                    int ty = y + (dy * king.color * scale);
-                    int tx = x + (dx * king.color * scale); // multiply by color to search the correct direction
-
-                    // if off the screen break
-                    if (ty < 0 || ty > 7 || tx < 0 || tx > 7) break;
-
-                    Piece target = board[ty][tx];
-                    if (target != null) { // square is open
-                        if (target.color == (king.color * -1)) { // opposite color piece
-                            switch (i) {
-                                case 0 -> {
-                                    // there is an opposite colored knight attacking the king
-                                    if (
-                                            target.type() == 'n'
-                                    ) return true;
-                                }
-                                case 1 -> {
-                                    // opposite colored rook or queen attacking the king
-                                    if (
-                                            target.type() == 'r' || target.type() == 'q'
-                                    ) return true;
-                                }
-                                case 2 -> {
-                                    // opposite colored bishop or queen attacking the king
-                                    if (
-                                            target.type() == 'b' || target.type() == 'q'
-                                    ) return true;
-                                }
-                                case 3 -> {
-                                    // pawn attacking the king
-                                    if (
-                                            target.type() == 'p'
-                                    ) return true;
-                                }
-                            }
-                        }
-
-                        // hit a piece --> no more searching this direction
-                        break;
-                    }
-
-                    if (i == 0 || i == 3)
-                        break; // looking at knight or pawn moves; don't reiterate
-
-                    scale += 1;
-                }
-            }
-
-
-        }
-
-        return false;
+    public boolean king_in_check(Position position, int king_side) {
+        return position.king_attacked(Position.side_from_color(king_side));
     }
 
     /*
-    - Given the moves a piece can make (as described by the dx and dy params) it returns the legal moves
-    - If early exit is false, it will search the entire board for the given direction vectors
-        - making it true allows support for knights, who have more limited mobility
+    Legal moves of the given piece. Moves are generated on the bitboards for the whole position and then
+    filtered down to the ones starting on the piece's square. They are not evaluated here; whoever needs a
+    move's score computes it
      */
-    public ArrayList<Move> get_piece_moves(int[] piece_dx, int[] piece_dy, Piece piece, boolean early_exit) {
-        if (piece == null) return null;
-
-        int y = piece.rank;
-        int x = piece.file;
+    public ArrayList<Move> get_legal_moves(Piece piece, int side_to_move) {
         ArrayList<Move> moves = new ArrayList<>();
-        boolean in_check = king_in_check(board, piece_map, side_to_move);
-
-        for (int i = 0; i < piece_dx.length; i++) {
-            int dx = piece_dx[i];
-            int dy = piece_dy[i];
-
-            int scale = 1;
-            while (true) {
-                int ty = y + (dy * piece.color * scale);
-                int tx = x + (dx * piece.color * scale); // multiply by color to search the correct direction
-                if (ty < 0 || ty > 7 || tx < 0 || tx > 7) break;
-                Point tpoint = new Point(tx, ty);
-                Piece target = board[ty][tx];
-
-                Piece[][] test_board = test_move_piece(piece.get_point(), tpoint);
-                double move_eval = engine.evaluate(test_board);
-
-                boolean king_in_check_from_move = king_in_check(
-                            test_board,
-                            test_piece_map,
-                            side_to_move
-                );
-
-                /*
-                possible moves are open squares or captures:
-                - it is legal if the king is not in check after the move
-                 */
-                if (target == null || target.color == piece.color * -1){
-                    if (!king_in_check_from_move) {
-                        moves.add(new Move(piece, piece.get_point(), tpoint, move_eval));
-                    }
-
-                    if (in_check) {
-                        if (piece.type() != 'n') break;
-                    }
-                }
-
-                // once you hit a piece in a direction, you're done
-                if (target != null) { break; }
-                if (early_exit) break;
-
-                scale += 1;
-            }
+        if (piece == null || piece.color != side_to_move) return moves;
 
+        int from = piece.get_square();
+        for (Move m : MoveGen.legal_moves(position)) {
+            if (Move.from(m.code) != from) continue;
+            moves.add(m);
         }
 
         return moves;
     }
 
-    public ArrayList<Move> get_legal_moves(Piece piece, int side_to_move) {
-        ArrayList<Move> moves = new ArrayList<>();
-
-        boolean in_check = king_in_check(board, piece_map, side_to_move);
-
-        int x = piece.file, y = piece.rank;
-        switch (piece.id) {
-            // loop through directions for each piece type
-            case 'p', 'P' -> {
-                int[] pawn_attacks_dx = {1, -1};
-                int[] pawn_attacks_dy = {1, 1};
-                // to find en passant: when dx==0 and dy==2, look left and righ to see
-                for (int i = 0; i < pawn_attacks_dy.length; i++) {
-                    int dx = pawn_attacks_dx[i];
-                    int dy = pawn_attacks_dy[i];
-                    // multiply by color to search the correct direction
-                    //target x and y coordinates
-                    int ty = y + (dy * piece.color);
-                    int tx = x + (dx * piece.color);
-                    if (ty < 0 || ty > 7 || tx < 0 || tx > 7) continue;
-                    Point tpoint = new Point(tx, ty);
-                    Piece[][] test_board = test_move_piece(piece.get_point(), tpoint);
-                    double move_eval = engine.evaluate(test_board);
-
-                    Piece target = board[ty][tx];
-
-
-                    if (target != null && target.color == (piece.color * -1)) { // piece is capturable
-                        if (in_check) {
-                            // if king is in check, only add moves which stop it
-                            boolean stops_check = !king_in_check(
-                                    test_board,
-                                    test_piece_map,
-                                    side_to_move
-                            );
-                            if (stops_check) {
-                                moves.add(new Move(piece, piece.get_point(), tpoint, move_eval));
-                            }
-                        } else {
-                            // if king is not in check, add moves which don't put him in check
-                            if (!king_in_check(test_board, test_piece_map, side_to_move)) {
-                                moves.add(new Move(piece, piece.get_point(), tpoint, move_eval));
-                            }
-                        }
-
-                    }
-                }
-
-                int[] ep_dx = {-1, 1};
-                for (int dx : ep_dx) {
-                    // multiply by color to search the correct direction
-                    //target x and y coordinates
-                    // ty = y
-                    int tx = x + (dx * piece.color);
-                    if (y < 0 || y > 7 || tx < 0 || tx > 7) continue;
-                    Piece target = board[y][tx]; // pawn side by side other pawn
-
-                    // forward 1, over 1
-                    Point tpoint = new Point(x + (dx * piece.color), y + piece.color);
-                    Piece[][] test_board = test_move_piece(piece.get_point(), tpoint);
-                    double move_eval = engine.evaluate(test_board);
-
-                    if (target != null && target.color == (piece.color * -1)) { // capturable piece
-                        if (target.open_to_en_passant && target.type() == 'p') {
-                            if (in_check) {
-                                boolean stops_check = !king_in_check(
-                                        test_board,
-                                        test_piece_map,
-                                        side_to_move
-                                );
-                                if (stops_check) {
-                                    moves.add(new Move(piece, piece.get_point(), tpoint, board[y][tx], move_eval));
-                                }
-                            } else {
-                                // doesn't put king in check
-                                // run this last because it's the most computationally intensive
-                                if (!king_in_check(test_board, test_piece_map, side_to_move)) {
-                                    moves.add(
-                                            new Move(piece, piece.get_point(), tpoint, board[y][tx], move_eval)
-                                    );
-                                }
-                            }
-
-                        }
-                    }
-                }
-
-                // move one forward if there are no pieces
-                if (board[y + piece.color][x] == null) {
-                    Point tpoint = new Point(x, y + piece.color);
-                    Piece[][] test_board = test_move_piece(piece.get_point(), tpoint);
-                    double move_eval = engine.evaluate(test_board);
-
-                    if (in_check) {
-                        boolean stops_check = !king_in_check(
-                                test_move_piece(piece.get_point(), tpoint),
-                                test_piece_map,
-                                side_to_move
-                        );
-                        if (stops_check) {
-                            moves.add(new Move(piece, piece.get_point(), tpoint, move_eval));
-                        }
-                    } else {
-                        if (!king_in_check(test_move_piece(piece.get_point(), tpoint), test_piece_map, side_to_move)) {
-                            moves.add(new Move(piece, piece.get_point(), tpoint, move_eval));
-                        }
-                    }
-
-                    // double push on first move AND must be nothing blocking
-                    if (piece.has_not_moved && board[y + (2 * piece.color)][x] == null) {
-                        tpoint = new Point(x, y + (2 * piece.color));
-                        if (in_check) {
-                            boolean stops_check = !king_in_check(
-                                    test_move_piece(piece.get_point(), tpoint),
-                                    test_piece_map,
-                                    side_to_move
-                            );
-                            if (stops_check) {
-                                moves.add(new Move(piece, piece.get_point(), tpoint, move_eval));
-                            }
-                        } else {
-                            if (!king_in_check(test_move_piece(piece.get_point(), tpoint), test_piece_map, side_to_move)) {
-                                moves.add(new Move(piece, piece.get_point(), tpoint, move_eval));
-                            }
-                        }
-                    }
-                }
-
-            }
-            case 'k', 'K' -> {
-                int[] king_dx = {0, 1, 0, -1, 1, 1, -1, -1};
-                int[] king_dy = {1, 0, -1, 0, 1, -1, 1, -1};
-                for (int i = 0; i < king_dx.length; i++) {
-                    int dx = king_dx[i];
-                    int dy = king_dy[i];
-                    // multiply by color to search the correct direction
-                    //target x and y coordinates
-                    int ty = y + (dy * piece.color);
-                    int tx = x + (dx * piece.color);
-                    if (ty < 0 || ty > 7 || tx < 0 || tx > 7) continue;
-                    Point tpoint = new Point(tx, ty);
-                    Piece[][] test_board = test_move_piece(piece.get_point(), tpoint);
-                    double move_eval = engine.evaluate(test_board);
-
-                    Piece target = board[ty][tx];
-                    if (target == null || target.color == (piece.color * -1)) { // square is open or can capture it
-                        // and move does NOT put king in check
-                        if (!king_in_check(test_board, test_piece_map, side_to_move)) {
-                            moves.add(new Move(piece, piece.get_point(), tpoint, move_eval));
-                        }
-                    }
-                }
-
-                // Castling
-                /*
-                If (
-                 king has not moved
-                 && (rooks in corner && have not moved)
-                 && no pieces in between
-                 && not in check
-                 && not in check by castling
-                ) { castle() }
-                 */
-
-                if (!in_check && piece.has_not_moved) {
-                    int x_ = 0;
-                    while (x_ <= 7) {
-                        Piece p = board[piece.rank][x_];
-                        if (p != null) {
-                            // if the piece is not == (either rook or king)
-                            // parantheses are cruicial!
-                            if (!(p.type() == 'r' || p.type() == 'k')) {
-                                // if there are any non-rook or king pieces on the back rank, castling not available
-                                // on this side --> check the other one
-                                if (x_ < piece.file) {
-                                    x_ = piece.file + 1;
-                                    continue;
-                                } else { break; }
-
-                            } else  {
-                                if (!p.has_not_moved) {
-                                    // only rooks and kings, but the rooks have already moved, so castling unavailable
-                                    if (x_ < piece.file) {
-                                        x_ = piece.file + 1;
-                                        continue;
-                                    } else { break; }
-                                }
-                            }
-                        }
-
-
-                        if (x_ >= 2 && x <= 6 && x_ != 4) {
-                            // these x coordinatres are all the possible places where the king will move
-                            // --> must check whether moving there will put him in check (if so, invalid)
-                            Point tpoint = new Point(x_, piece.rank);
-                            if (king_in_check(test_move_piece(piece.get_point(), tpoint), test_piece_map, side_to_move)) {
-                                if (x_ < piece.file) {
-                                    x_ = piece.file + 1;
-                                    continue;
-                                } else { break; }
-                            }
-                        }
-
-                        x_++;
-
-                        // after checking the rook on the last file, add the move if everything is ok
-                        // x_ was incremented so it will be 8 if everything is valid, and not 7 (ends the while loop)
-                        if (x_ == piece.file || x_ == 8) {
-                            // if either of these points are reached, that side castling is eligible
-                            int dir = x_ == piece.file ? -1 : 1;
-                            Point tpoint = new Point(piece.file + 2*dir, piece.rank);
-                            double move_eval = engine.evaluate(test_move_piece(piece.get_point(), tpoint));
-                            moves.add(new Move(piece, piece.get_point(), tpoint, move_eval));
-                        }
-                    }
-                }
-
-            }
-            case 'n', 'N' -> {
-                int[] knight_dy = {2, 2, 1, -1, 1, -1, -2, -2};
-                int[] knight_dx = {1, -1, 2, 2, -2, -2, 1, -1};
-                moves.addAll(get_piece_moves(knight_dx, knight_dy, piece, true));
-            }
-            case 'r', 'R' -> {
-                int[] rook_dx = {1, -1, 0, 0};
-                int[] rook_dy = {0, 0, 1, -1};
-                moves.addAll(get_piece_moves(rook_dx, rook_dy, piece, false));
-            }
-            case 'b', 'B' -> {
-                int[] bishop_dx = {1,  1, -1, -1};
-                int[] bishop_dy = {1, -1,  1, -1};
-                moves.addAll(get_piece_moves(bishop_dx, bishop_dy, piece, false));
-            }
-            case 'q', 'Q' -> {
-                int[] rook_dx = {1, -1, 0, 0};
-                int[] rook_dy = {0, 0, 1, -1};
-                int[] bishop_dx = {1,  1, -1, -1};
-                int[] bishop_dy = {1, -1,  1, -1};
-
-                moves.addAll(get_piece_moves(rook_dx, rook_dy, piece, false));
-                moves.addAll(get_piece_moves(bishop_dx, bishop_dy, piece, false));
-            }
-            default -> {}
+    /*
+    Legal moves of the selected piece, from the cache when the position and the selection are the ones it
+    was filled for
+     */
+    private ArrayList<Move> selected_moves() {
+        if (selected_piece == null) return new ArrayList<>();
+        int square = selected_piece.get_square();
+        if (square != cached_square || position.key() != cached_key) {
+            cached_moves = get_legal_moves(selected_piece, get_side_to_move());
+            cached_square = square;
+            cached_key = position.key();
         }
-
-        return moves;
+        return cached_moves;
     }
 
-    @Override
-    protected void paintComponent(Graphics g) {
-        super.paintComponent(g);
-        g2d = (Graphics2D) g;
-
-        String[] files = new String[] {"A", "B", "C", "D", "E", "F", "G", "H"};
-        Color light_square = new Color(231, 214, 185);
-        Color dark_square = new Color(115, 109, 171);
+    private BufferedImage draw_background() {
+        BufferedImage image = new BufferedImage(square_width * 8, square_height * 8, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        g.setFont(COORDINATES_FONT);
         for (int y = 0; y < 8; y++) {
             for (int x = 0; x < 8; x++) {
-                if ((y + x) % 2 == 0) {
-                    g2d.setColor(light_square);
-                } else {
-                    g2d.setColor(dark_square);
-                }
-                g2d.fillRect(x * square_width, y * square_height, square_width, square_height);
+                boolean light = (y + x) % 2 == 0;
+                g.setColor(light ? LIGHT_SQUARE : DARK_SQUARE);
+                g.fillRect(x * square_width, y * square_height, square_width, square_height);
 
                 // FLIP THE COLORS FOR THE TEXT
-                if ((y + x) % 2 == 0) {
-                    g2d.setColor(dark_square);
-                } else {
-                    g2d.setColor(light_square);
-                }
+                g.setColor(light ? DARK_SQUARE : LIGHT_SQUARE);
                 if (x == 0) {
-                    g2d.setFont(new Font(Font.SANS_SERIF, Font.PLAIN, 12));
-                    g2d.drawString(String.valueOf(8 - y), 3, y * square_height + 15);
+                    g.drawString(String.valueOf(8 - y), 3, y * square_height + 15);
                 }
                 if (y == 7) {
-                    g2d.setFont(new Font(Font.SANS_SERIF, Font.PLAIN, 12));
-                    g2d.drawString(files[x], x * square_width + square_width - 12, y * square_height + square_height - 5);
+                    g.drawString(FILES[x], x * square_width + square_width - 12, y * square_height + square_height - 5);
                 }
-
             }
-
         }
+        g.dispose();
+        return image;
+    }
+
+    /*
+    Only what lies in the clip is drawn: after a move or a click just the squares that changed are
+    repainted (see repaint_square)
+     */
+    @Override
+    protected void paintComponent(Graphics g) {
+        super.paintComponent(g);
+        g2d = (Graphics2D) g;
+        Rectangle clip = g2d.getClipBounds();
+        if (clip == null) clip = new Rectangle(0, 0, getWidth(), getHeight());
+
+        if (background == null) background = draw_background();
+        g2d.drawImage(background, 0, 0, this);
 
         if (curr_click != null) {
-            g2d.setColor(light_square);
+            g2d.setColor(LIGHT_SQUARE);
             g2d.fillRect(curr_click.x * square_width, curr_click.y * square_height, square_width, square_height);
-            g2d.setColor(new Color(0x7CFF3131, true));
+            g2d.setColor(HIGHLIGHT);
             g2d.fillRect(curr_click.x * square_width, curr_click.y * square_height, square_width, square_height);
         }
 
-        for (Piece[] rank : board) {
-            for (Piece piece : rank) {
+        // only the ranks and files the clip touches
+        int first_file = Math.max(0, clip.x / square_width), last_file = Math.min(7, (clip.x + clip.width - 1) / square_width);
+        int first_rank = Math.max(0, clip.y / square_height), last_rank = Math.min(7, (clip.y + clip.height - 1) / square_height);
+        int size = square_width - 10;
+        for (int rank = first_rank; rank <= last_rank; rank++) {
+            for (int file = first_file; file <= last_file; file++) {
+                Piece piece = board[rank][file];
                 if (piece == null) continue;
+                // drawn at the size it was scaled to, so nothing is resized while painting
                 g2d.drawImage(
-                        piece.get_image(piece.id),
+                        piece.get_image(size),
                         piece.file*square_width + 5, piece.rank*square_height + 5,
-                        square_width - 10, square_height - 10,
                         this
                 );
             }
         }
 
         if (selected_piece != null) {
-            ArrayList<Move> legal_moves = get_legal_moves(selected_piece, side_to_move);
-            for (Move move : legal_moves) {
-                if (move == null) break;
-
+            g2d.setColor(HIGHLIGHT);
+            for (Move move : selected_moves()) {
 //                    g2d.setColor(new Color(0x99BC6FFF, true));
 //                    g2d.fillRect(
 //                            move.x * square_width, move.y * square_height,
 //                            square_width, square_height
 //                    );
 
-                // draw dot on legal moves
-                g2d.setColor(new Color(0x7CFF3131, true));
-                g2d.setStroke(new BasicStroke(1));
-                // black dot over sqaure to move to
+                // dot over the square to move to
                 g2d.fillOval(
-                        move.to.x*square_width + square_width/2 - 10,
-                        move.to.y*square_height + square_height/2 - 10,
-                        20, 20
+                        move.to.x*square_width + square_width/2 - DOT_SIZE/2,
+                        move.to.y*square_height + square_height/2 - DOT_SIZE/2,
+                        DOT_SIZE, DOT_SIZE
                 );
             }
         }
-
-        // Put pieces ont top of the board
     }
 
-    private Piece[][] deep_copy_board() {
-        Piece[][] copy_board = new Piece[8][8];
-
-        for (int i = 0; i < board.length; i++) {
-            Piece[] row = board[i];
-            for (int j = 0; j < row.length; j++) {
-                if (row[j] == null) {
-                    copy_board[i][j] = null;
-                } else {
-                    Piece p = new Piece(row[j]);
-                    copy_board[i][j] = p;
-                    test_piece_map.put(p.id, p.get_point());
-                }
-            }
-        }
-        return copy_board;
+    // schedules a repaint of one square (rank * 8 + file) only
+    private void repaint_square(int square) {
+        repaint(new Rectangle((square & 7) * square_width, (square >>> 3) * square_height, square_width, square_height));
     }
 
-    public Piece[][] test_move_piece(Point from, Point to) {
-
-        Piece[][] copy_board = deep_copy_board();
-
-        copy_board[to.y][to.x] = copy_board[from.y][from.x];
-        copy_board[from.y][from.x] = null;
+    // the selected square and the dots of its legal moves, before a selection changes and after
+    private void repaint_selection() {
+        if (curr_click != null) repaint_square(curr_click.y * 8 + curr_click.x);
+        for (Move move : selected_moves()) repaint_square(Move.to(move.code));
+    }
 
-        copy_board[to.y][to.x].move(to);
-        test_piece_map.replace(copy_board[to.y][to.x].id, to);
-        return copy_board;
+    public Position get_position() {
+        return position;
     }
 
     public void move_piece_in_place(Move move) {
-        Point to = move.to;
-        Point from = move.from;
-
-        board[to.y][to.x] = board[from.y][from.x];
-        board[from.y][from.x] = null;
-
-        board[to.y][to.x].move(to);
-        piece_map.replace(board[to.y][to.x].id, to);
-
-        if (move.captured != null) {
-            Point p = move.captured.get_point();
-            board[p.y][p.x] = null;
-        }
-
-        // no matter what, remove en passant rights
-        for (Piece[] pieces : board) {
-            for (Piece piece : pieces) {
-                if (piece != null) {
-                    piece.open_to_en_passant = false;
-                }
-            }
-        }
-
-        // only give en passant rights to the one piece which just moved
-        if (move.piece.type() == 'p') {
-            if (Math.abs(move.to.y - move.from.y) == 2) {
-                // pawn moved forward twice
-                board[move.to.y][move.to.x].open_to_en_passant = true;
-            }
-
-            if (move.to.y == 0 || move.to.y == 7) {
-                move.piece.promote();
-            }
-        }
-
-        // handle castling
-        if (move.piece.type() == 'k') {
-            if (Math.abs(move.to.x - move.from.x) == 2) {
-                // king was already moved above --> move the rook
-                if (move.to.x < move.from.x) {
-                    // queen side
-                    Piece qs_rook = board[move.piece.rank][0];
-                    move_piece_in_place(
-                            new Move(
-                                    qs_rook,
-                                    qs_rook.get_point(),
-                                    new Point(3, move.piece.rank)
-                            )
-                    );
-                } else {
-                    // king side
-                    Piece ks_rook = board[move.piece.rank][7];
-                    move_piece_in_place(
-                            new Move(ks_rook, ks_rook.get_point(),
-                                    new Point(5, move.piece.rank)
-                            )
-                    );
-                }
-            }
+        position.make(move.code);
+        board = position.to_grid();
+        cached_square = -1;
+
+        // the squares the move changed: both ends, a pawn taken en passant and a castling rook
+        int from = Move.from(move.code), to = Move.to(move.code);
+        repaint_square(from);
+        repaint_square(to);
+        if ((move.code & Move.EN_PASSANT) != 0) repaint_square((from & ~7) | (to & 7));
+        if ((move.code & Move.CASTLE) != 0) {
+            repaint_square(to > from ? to + 1 : to - 2);
+            repaint_square(to > from ? to - 1 : to + 1);
         }
 
-        engine.update_eval(move.evaluation);
+        engine.update_eval(engine.evaluate(position));
     }
 
     public void play_sound(String path) {
@@ -677,7 +231,11 @@ public class Board extends JPanel implements MouseListener, MouseMotionListener,
     }
 
     private void play_sound_for_move(Move move) {
-        if (king_in_check(test_move_piece(move.from, move.to), test_piece_map, side_to_move * -1)) {
+        position.make(move.code);
+        boolean gives_check = position.in_check();
+        position.unmake(move.code);
+
+        if (gives_check) {
             play_sound("materials/audio/check.wav");
         } else if (board[move.to.y][move.to.x] != null) {
             // piece is being captured
@@ -691,6 +249,9 @@ public class Board extends JPanel implements MouseListener, MouseMotionListener,
 
     @Override
     public void mousePressed(MouseEvent e) {
+        // the engine is thinking about its reply; the board waits for it
+        if (engine.is_thinking()) return;
+
         // Handle clicking on a piece
         Point click = e.getPoint();
         Point trans_p = new Point(
@@ -700,37 +261,38 @@ public class Board extends JPanel implements MouseListener, MouseMotionListener,
 
         // check to see if a move should be made
         if (selected_piece != null) {
-            for (Move move : get_legal_moves(selected_piece, side_to_move)) {
+            for (Move move : selected_moves()) {
                 if (trans_p.equals(move.to)) {
 
-                    play_sound_for_move(move);
-                    move_piece_in_place(move);
-
-                    side_to_move *= -1;
-                    // Random move generation
-//                    Move engine_move = engine.get_random_piece_move(board, side_to_move);
-//                    Move engine_move = engine.get_greedy_capture_move(board, side_to_move);
-                    Move engine_move = engine.get_greedy_move_with_tables(board, side_to_move);
-
-                    if (engine_move != null) {
-                        play_sound_for_move(engine_move);
-                        move_piece_in_place(engine_move);
-                    }
-
+                    // the dots go away with the selection; cleared first, while they're still the moves of this position
+                    repaint_selection();
                     curr_click = null;
                     selected_piece = null;
 
-                    side_to_move *= -1;
+                    play_sound_for_move(move);
+                    move_piece_in_place(move);
 
-                    repaint();
+                    // Random move generation
+//                    Move engine_move = engine.get_random_piece_move(board, get_side_to_move());
+//                    Move engine_move = engine.get_greedy_capture_move(board, get_side_to_move());
+//                    Move engine_move = engine.get_greedy_move_with_tables(board, get_side_to_move());
+
+                    // the reply is searched off the Swing thread and played when it arrives
+                    engine.search_async(engine_move -> {
+                        if (engine_move != null) {
+                            play_sound_for_move(engine_move);
+                            move_piece_in_place(engine_move);
+                        }
+                    });
                     return;
                 }
             }
         }
 
+        repaint_selection();
         Piece target = board[trans_p.y][trans_p.x];
         // if there is no piece reset the square
-        if (target == null || target.color != side_to_move) {
+        if (target == null || target.color != get_side_to_move()) {
             curr_click = null;
             selected_piece = null;
         } else {
@@ -745,11 +307,7 @@ public class Board extends JPanel implements MouseListener, MouseMotionListener,
             }
         }
 
-        repaint();
-    }
-
-    public HashMap<Character, Point> get_test_piece_map() {
-        return test_piece_map;
+        repaint_selection();
     }
 
     @Override
@@ -1,17 +1,39 @@
 import javax.swing.*;
 import java.awt.*;
 import java.util.ArrayList;
-import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
 
 public class Engine extends JPanel {
     int square_width = 75, square_height = 75;
     double current_eval = 0.0;
     Board board = null;
     Frame parent;
-    Engine(int parent_width, int parent_height, Frame parent) {
+    // shared by every search this engine runs; sized once, when the engine is built
+    final TranspositionTable tt;
+    final LazySmp smp;
+    long search_time_ms = 1000;
+    // for evaluations on the Swing thread; the search threads have their own
+    private final PawnTable pawns = new PawnTable(1 << 10);
+    private static final int CHECK_BONUS = 100; // centipawns the greedy player gives a move for checking
+    // searches are started from here so the Swing thread never waits on one; the search itself runs on smp's threads
+    private final ExecutorService thinker = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "engine-think");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // only touched on the Swing thread
+    private Future<?> thinking;
+    // bumped by every search and every cancel, so whatever an abandoned search still reports is dropped
+    private volatile int generation;
+    Engine(int parent_width, int parent_height, Frame parent, int hash_mb, int threads) {
         setLocation((parent_width - square_width*8)/2 - 40, (parent_height-square_height*8)/2 - 10);
         setSize(30, square_height*8);
         this.parent = parent;
+        this.tt = new TranspositionTable(hash_mb);
+        this.smp = new LazySmp(tt, threads);
     }
 
     @Override
@@ -20,7 +42,7 @@ public class Engine extends JPanel {
         Graphics2D g2d = (Graphics2D) g;
 
         g2d.setColor(Color.BLACK);
-        int black_height = square_height * 4 - ((int)current_eval * 20);
+        int black_height = black_height(current_eval);
         g2d.fillRect(
                 0, 0,
                 30, black_height
@@ -32,89 +54,8 @@ public class Engine extends JPanel {
                 0, black_height,
                 30, (square_height*8) - black_height
         );
-
-        setVisible(true);
     }
 
-    Map<Character, Integer> piece_values = Map.of(
-            'p', 1,
-            'b', 3,
-            'n', 3,
-            'r', 5,
-            'q', 9,
-            'k', 0
-    );
-
-    int[][] pawntable = {
-            {0,  0,  0,   0,   0,  0,  0, 0},
-            {5, 10,  10, -20, -20,  10, 10, 5},
-            {5, -5, -10,   0,   0, -10, -5, 5},
-            {0,  0,   0,  20,  20,   0,  0, 0},
-            {5,  5,  10,  25,  25,  10,  5, 5},
-            {10, 10, 20, 30, 30, 20, 10, 10},
-            {50, 50, 50, 50, 50, 50, 50, 50},
-            {1000, 1000, 1000, 1000, 1000, 1000, 1000, 1000}
-    };
-
-    int[][] knightstable = {
-            {-50, -40, -30, -30, -30, -30, -40, -50,},
-            {-40, -20, 0, 5, 5, 0, -20, -40,},
-            {-30, 5, 10, 15, 15, 10, 5, -30,},
-            {-30, 0, 15, 20, 20, 15, 0, -30,},
-            {-30, 5, 15, 20, 20, 15, 5, -30,},
-            {-30, 0, 10, 15, 15, 10, 0, -30,},
-            {-40, -20, 0, 0, 0, 0, -20, -40,},
-            {-50, -40, -30, -30, -30, -30, -40, -50},
-    };
-    int[][] bishopstable = {
-            {-20, -10, -10, -10, -10, -10, -10, -20,},
-            {-10, 5, 0, 0, 0, 0, 5, -10,},
-            {-10, 10, 10, 10, 10, 10, 10, -10,},
-            {-10, 0, 10, 10, 10, 10, 0, -10,},
-            {-10, 5, 5, 10, 10, 5, 5, -10,},
-            {-10, 0, 5, 10, 10, 5, 0, -10,},
-            {-10, 0, 0, 0, 0, 0, 0, -10,},
-            {-20, -10, -10, -10, -10, -10, -10, -20},
-    };
-    int[][] rookstable = {
-            {0, 0, 0, 5, 5, 0, 0, 0,},
-            {-5, 0, 0, 0, 0, 0, 0, -5,},
-            {-5, 0, 0, 0, 0, 0, 0, -5,},
-            {-5, 0, 0, 0, 0, 0, 0, -5,},
-            {-5, 0, 0, 0, 0, 0, 0, -5,},
-            {-5, 0, 0, 0, 0, 0, 0, -5,},
-            {5, 10, 10, 10, 10, 10, 10, 5,},
-            {0, 0, 0, 0, 0, 0, 0, 0},
-    };
-    int[][] queenstable = {
-            {-20, -10, -10, -5, -5, -10, -10, -20,},
-            {-10, 0, 0, 0, 0, 0, 0, -10,},
-            {-10, 5, 5, 5, 5, 5, 0, -10,},
-            {0, 0, 5, 5, 5, 5, 0, -5,},
-            {-5, 0, 5, 5, 5, 5, 0, -5,},
-            {-10, 0, 5, 5, 5, 5, 0, -10,},
-            {-10, 0, 0, 0, 0, 0, 0, -10,},
-            {-20, -10, -10, -5, -5, -10, -10, -20},
-    };
-    int[][] kingstable = {
-            {20, 30, 10, 0, 0, 10, 30, 20,},
-            {20, 20, 0, 0, 0, 0, 20, 20,},
-            {-10, -20, -20, -20, -20, -20, -20, -10,},
-            {-20, -30, -30, -40, -40, -30, -30, -20,},
-            {-30, -40, -40, -50, -50, -40, -40, -30,},
-            {-30, -40, -40, -50, -50, -40, -40, -30,},
-            {-30, -40, -40, -50, -50, -40, -40, -30,},
-            {-30, -40, -40, -50, -50, -40, -40, -30}
-    };
-    Map<Character, int[][]> eval_tables = Map.of(
-            'k', kingstable,
-            'q', queenstable,
-            'r', rookstable,
-            'b', bishopstable,
-            'n', knightstable,
-            'p', pawntable
-    );
-
     public Move get_random_piece_move(Piece[][] board, int side_to_move) {
         if (this.board == null) this.board = parent.get_board();
 
@@ -134,149 +75,158 @@ public class Engine extends JPanel {
 
     /*
     Gets best move according to the evaluation function. Since that just counts material, this
-    searches for a move for black where it can capture the most material—— no holds barred.
+    searches for a move where it can capture the most material—— no holds barred.
     Will lose any piece for material
      */
     public Move get_greedy_capture_move(Piece[][] board, int side_to_move) {
-        if (this.board == null) this.board = parent.get_board();
-
-        Move best_move = null;
-        ArrayList<Move> equal_moves = new ArrayList<>();
-        for (Piece[] row : board) {
-            for (Piece piece : row) {
-                if (piece == null || piece.color != side_to_move) continue;
-
-                ArrayList<Move> moves = this.board.get_legal_moves(piece, side_to_move);
-                for (Move m : moves) {
-                    Piece[][] test_board = this.board.test_move_piece(m.from, m.to);
-                    double curr_eval = material_eval(test_board);
-                    if (side_to_move == Piece.BLACK) {
-                        // black wants more negative evaluations
-                        if (best_move == null || curr_eval < best_move.evaluation) {
-                            // check for less than because a more negative eval means black is winning
-                            best_move = m;
-                            equal_moves.clear(); // if there is a new better move, clear the equal moves and
-                            // then add to it if there are any other moves that equal this
-                            // new best move
-                        }
-                    }
-                    if (side_to_move == Piece.WHITE) {
-                        // white wants more positive evaluations
-                        if (best_move == null || m.evaluation > best_move.evaluation) {
-                            // check for less than because a more negative eval means black is winning
-                            best_move = m;
-                            equal_moves.clear(); // if there is a new better move, clear the equal moves and
-                            // then add to it if there are any other moves that equal this
-                            // new best move
-                        }
-                    }
-                    if (best_move != null && best_move.evaluation == m.evaluation) {
-                        equal_moves.add(m);
-                    }
-
-                }
-            }
-        }
-
-        // if all the moves are equal (e.x. there are multiple ways to capture a piece)
-        // pick a random one
-        if (best_move != null && equal_moves.size() > 0) {
-            if (best_move.evaluation == equal_moves.get(0).evaluation) {
-                return equal_moves.get( (int) (Math.random()*equal_moves.size()));
-            }
-        }
-
-        return best_move;
+        return get_greedy_move(side_to_move, false);
     }
 
+    /*
+    Same, but scored with the full evaluation (piece-square tables included) plus a bonus for giving check
+     */
     public Move get_greedy_move_with_tables(Piece[][] board, int side_to_move) {
-        if (this.board == null) this.board = parent.get_board();
+        return get_greedy_move(side_to_move, true);
+    }
 
-        Move best_move = null;
-        ArrayList<Move> equal_moves = new ArrayList<>();
-        for (Piece[] row : board) {
-            for (Piece piece : row) {
-                if (piece == null || piece.color != side_to_move) continue;
+    /*
+    Plays each legal move and keeps the best one for the side making it, picking at random between equal
+    ones. Scores are integer centipawns from the mover's point of view, so one comparison serves both colors
+     */
+    private Move get_greedy_move(int side_to_move, boolean with_tables) {
+        if (this.board == null) this.board = parent.get_board();
 
-                ArrayList<Move> moves = this.board.get_legal_moves(piece, side_to_move);
-                for (Move m : moves) {
-                    Piece[][] test_board = this.board.test_move_piece(m.from, m.to);
-                    int check_bonus = this.board.king_in_check(test_board, this.board.get_test_piece_map(), side_to_move*-1) ? 1 : 0;
-                    double curr_eval = material_eval(test_board) + (double) eval_tables.get(piece.type())[m.to.y][m.to.x]/100 + check_bonus;
-                    if (side_to_move == Piece.BLACK) {
-                        // black wants more negative evaluations
-                        if (best_move == null || curr_eval < best_move.evaluation) {
-                            // check for less than because a more negative eval means black is winning
-                            best_move = m;
-                            equal_moves.clear(); // if there is a new better move, clear the equal moves and
-                            // then add to it if there are any other moves that equal this
-                            // new best move
-                        }
-                    }
-                    if (side_to_move == Piece.WHITE) {
-                        // white wants more positive evaluations
-                        if (best_move == null || m.evaluation > best_move.evaluation) {
-                            // check for less than because a more negative eval means black is winning
-                            best_move = m;
-                            equal_moves.clear(); // if there is a new better move, clear the equal moves and
-                            // then add to it if there are any other moves that equal this
-                            // new best move
-                        }
-                    }
-                    if (best_move != null && best_move.evaluation - m.evaluation < 1) {
-                        equal_moves.add(m);
-                    }
+        Position position = this.board.get_position();
+        int us = Position.side_from_color(side_to_move);
+        if (position.side_to_move() != us) return null;
 
-                }
+        int best_score = Integer.MIN_VALUE;
+        ArrayList<Move> equal_moves = new ArrayList<>();
+        for (Move m : MoveGen.legal_moves(position)) {
+            position.make(m.code);
+            int curr_eval;
+            if (with_tables) {
+                // the opponent is to move now, so the evaluation is from their side
+                curr_eval = -Evaluation.evaluate(position, pawns) + (position.in_check() ? CHECK_BONUS : 0);
+            } else {
+                curr_eval = Evaluation.material(position, us) - Evaluation.material(position, us ^ 1);
             }
-        }
+            position.unmake(m.code);
 
-        // if all the moves are equal (e.x. there are multiple ways to capture a piece)
-        // pick a random one
-        if (best_move != null && equal_moves.size() > 0) {
-            if (best_move.evaluation == equal_moves.get(0).evaluation) {
-                return equal_moves.get( (int) (Math.random()*equal_moves.size()));
+            if (curr_eval > best_score) {
+                best_score = curr_eval;
+                equal_moves.clear();
             }
+            if (curr_eval == best_score) equal_moves.add(m);
         }
 
-        return best_move;
+        if (equal_moves.isEmpty()) return null;
+        return equal_moves.get((int) (Math.random() * equal_moves.size()));
     }
 
+    /*
+    Iterative-deepening alpha-beta search from the board's current position, stopped after
+    search_time_ms. The search threads work on copies so the board's own position is never touched
+     */
     public Move search(Piece[][] board, int side_to_move) {
         if (this.board == null) this.board = parent.get_board();
 
+        Position root = this.board.get_position();
+        SearchResult result = smp.think(root, SearchLimits.movetime(search_time_ms));
+        return to_board_move(result);
+    }
 
+    /*
+    Same search on the engine's own thread. Returns at once; each finished iteration moves the eval bar,
+    and on_move gets the move (null if there is none) on the Swing thread once search_time_ms is up.
+    If the search throws, the error is printed and on_move isn't called. A search already running is
+    cancelled first
+     */
+    public void search_async(Consumer<Move> on_move) {
+        if (this.board == null) this.board = parent.get_board();
+        cancel_search();
+
+        int id = ++generation;
+        // the search works on a copy taken now, so the board may change while it runs
+        Position root = new Position(this.board.get_position());
+        int us = root.side_to_move();
+        SearchLimits limits = SearchLimits.movetime(search_time_ms);
+        thinking = thinker.submit(() -> {
+            SearchResult result = null;
+            try {
+                result = smp.think(root, limits, iteration -> {
+                    // a cancel that came before the search had started is picked up here
+                    if (id != generation) smp.stop();
+                    SwingUtilities.invokeLater(() -> {
+                        if (id == generation) update_eval(white_eval(iteration.score, us));
+                    });
+                });
+            } catch (RuntimeException | Error e) {
+                // nobody reads the future, so this is the only place the failure can be seen
+                e.printStackTrace();
+            } finally {
+                // the board takes clicks again either way; without a move it only needs repainting
+                SearchResult found = result;
+                SwingUtilities.invokeLater(() -> {
+                    if (id != generation) return;
+                    thinking = null;
+                    if (found != null) on_move.accept(to_board_move(found));
+                    else board.repaint();
+                });
+            }
+        });
+    }
+
+    /*
+    Stops the running search, if any; it unwinds at its next node check and its result is thrown away
+     */
+    public void cancel_search() {
+        generation++;
+        if (thinking == null) return;
+        thinking.cancel(false); // in case it is still queued
+        thinking = null;
+        smp.stop();
+    }
 
-        return null;
+    public boolean is_thinking() {
+        return thinking != null;
     }
 
-    public double material_eval(Piece[][] board) {
-        double eval;
+    private static Move to_board_move(SearchResult result) {
+        return result.best_move == Move.NONE ? null : new Move(result.best_move);
+    }
 
-        int white_material = 0, black_material = 0;
-        for (Piece[] row : board) {
-            for (Piece piece : row) {
-                if (piece == null) continue;
+    // the eval bar shows white's point of view, in pawns; search scores are the side to move's
+    private static double white_eval(int score, int us) {
+        return (us == Position.WHITE_SIDE ? score : -score) / 100.0;
+    }
 
-                if (piece.color == Piece.WHITE) {
-                    white_material += piece_values.get(piece.type());
-                } else {
-                    black_material += piece_values.get(piece.type());
-                }
-            }
-        }
+    /*
+    Material balance in pawns, counted with a popcount per piece bitboard instead of walking the squares
+     */
+    public double material_eval(Position position) {
+        int white_material = Evaluation.material(position, Position.WHITE_SIDE);
+        int black_material = Evaluation.material(position, Position.BLACK_SIDE);
 
-        eval = white_material - black_material;
+        return (white_material - black_material) / 100.0;
+    }
 
-        return eval;
+    /*
+    Evaluation in pawns from white's point of view, for the eval bar. A full evaluation, mobility included,
+    with only the pawn terms cached; fine once per move, the search goes through its EvalCache instead
+     */
+    public double evaluate(Position position) {
+        return Evaluation.score(position, pawns) / 100.0;
     }
 
-    public double evaluate(Piece[][] board) {
-        return material_eval(board);
+    private int black_height(double eval) {
+        return square_height * 4 - ((int)eval * 20);
     }
 
+    // the bar is only repainted when what it shows changes, since a search reports every iteration
     public void update_eval(double new_eval) {
+        boolean changed = black_height(new_eval) != black_height(current_eval);
         current_eval = new_eval;
-        repaint();
+        if (changed) repaint();
     }
 }
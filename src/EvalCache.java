@@ -0,0 +1,69 @@
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+Direct-mapped cache of static evaluations, shared by all search threads. Transpositions reach the same
+leaves over and over, and the evaluation walks every piece for mobility, so a lookup is much cheaper.
+
+Each slot is two longs, the position key XORed with the data and the data itself, the same trick the
+TranspositionTable uses: a slot torn by two threads writing at once doesn't give back its key, so it
+reads as a miss instead of a wrong score. A new evaluation always replaces whatever was in its slot.
+
+Data layout:
+    bits  0-31  score from the side to move's point of view
+    bit  32     set in every stored entry, so data is never 0
+ */
+public class EvalCache {
+    private static final long VALID = 1L << 32;
+
+    private final long[] table;
+    private final int mask;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public EvalCache(int size_mb) {
+        long slots = Long.highestOneBit(Math.max(1, size_mb) * 1024L * 1024L / 16);
+        slots = Math.min(slots, 1L << 29);
+        table = new long[(int) slots * 2];
+        mask = (int) slots - 1;
+    }
+
+    public void clear() {
+        java.util.Arrays.fill(table, 0L);
+        hits.reset();
+        misses.reset();
+    }
+
+    /*
+    Returns the data stored for the key, or 0 if there is none
+     */
+    public long probe(long key) {
+        int index = ((int) key & mask) * 2;
+        long data = table[index + 1];
+        if ((table[index] ^ data) == key && data != 0) {
+            hits.increment();
+            return data;
+        }
+        misses.increment();
+        return 0L;
+    }
+
+    public void store(long key, int score) {
+        int index = ((int) key & mask) * 2;
+        long data = (score & 0xFFFFFFFFL) | VALID;
+        table[index] = key ^ data;
+        table[index + 1] = data;
+    }
+
+    public static int score(long data) {
+        return (int) data;
+    }
+
+    public long hits() {
+        return hits.sum();
+    }
+
+    public long misses() {
+        return misses.sum();
+    }
+}
@@ -0,0 +1,163 @@
+/*
+Static evaluation for the search, in centipawns from the side to move's point of view.
+
+Material and piece-square values are kept by Position as two running sums from white's point of view,
+one for the middlegame and one for the endgame, updated whenever a piece is put on or taken off a
+square. The game phase (how much non-pawn material is left) is kept the same way. Evaluating a
+position then adds the pawn structure terms (cached in a PawnTable) and piece mobility, and blends
+the two sums by the phase. Mobility is the one term that walks the pieces, so the search keeps whole
+evaluations in an EvalCache.
+ */
+public final class Evaluation {
+    // indexed by Position piece type: pawn, knight, bishop, rook, queen, king
+    public static final int[] PIECE_VALUES = {100, 300, 300, 500, 900, 0};
+    // how much each piece type counts toward the middlegame; the starting position has MAX_PHASE
+    private static final int[] PHASE_WEIGHTS = {0, 1, 1, 2, 4, 0};
+    public static final int MAX_PHASE = 24;
+
+    // per square a knight, bishop, rook or queen can go to beyond a typical number, by piece type
+    private static final int[] MOBILITY_MG = {0, 4, 5, 2, 1, 0};
+    private static final int[] MOBILITY_EG = {0, 4, 5, 4, 2, 0};
+    private static final int[] MOBILITY_BASE = {0, 4, 6, 7, 13, 0};
+
+    /*
+    Piece-square tables for a white piece, laid out like the board: a8 first, h1 last. A black piece on
+    a square reads the entry mirrored across the middle rank (square ^ 56)
+     */
+    static final int[] PAWN_TABLE = {
+            1000, 1000, 1000, 1000, 1000, 1000, 1000, 1000,
+              50,   50,   50,   50,   50,   50,   50,   50,
+              10,   10,   20,   30,   30,   20,   10,   10,
+               5,    5,   10,   25,   25,   10,    5,    5,
+               0,    0,    0,   20,   20,    0,    0,    0,
+               5,   -5,  -10,    0,    0,  -10,   -5,    5,
+               5,   10,   10,  -20,  -20,   10,   10,    5,
+               0,    0,    0,    0,    0,    0,    0,    0,
+    };
+    static final int[] KNIGHT_TABLE = {
+            -50, -40, -30, -30, -30, -30, -40, -50,
+            -40, -20,   0,   0,   0,   0, -20, -40,
+            -30,   0,  10,  15,  15,  10,   0, -30,
+            -30,   5,  15,  20,  20,  15,   5, -30,
+            -30,   0,  15,  20,  20,  15,   0, -30,
+            -30,   5,  10,  15,  15,  10,   5, -30,
+            -40, -20,   0,   5,   5,   0, -20, -40,
+            -50, -40, -30, -30, -30, -30, -40, -50,
+    };
+    static final int[] BISHOP_TABLE = {
+            -20, -10, -10, -10, -10, -10, -10, -20,
+            -10,   0,   0,   0,   0,   0,   0, -10,
+            -10,   0,   5,  10,  10,   5,   0, -10,
+            -10,   5,   5,  10,  10,   5,   5, -10,
+            -10,   0,  10,  10,  10,  10,   0, -10,
+            -10,  10,  10,  10,  10,  10,  10, -10,
+            -10,   5,   0,   0,   0,   0,   5, -10,
+            -20, -10, -10, -10, -10, -10, -10, -20,
+    };
+    static final int[] ROOK_TABLE = {
+             0,  0,  0,  0,  0,  0,  0,  0,
+             5, 10, 10, 10, 10, 10, 10,  5,
+            -5,  0,  0,  0,  0,  0,  0, -5,
+            -5,  0,  0,  0,  0,  0,  0, -5,
+            -5,  0,  0,  0,  0,  0,  0, -5,
+            -5,  0,  0,  0,  0,  0,  0, -5,
+            -5,  0,  0,  0,  0,  0,  0, -5,
+             0,  0,  0,  5,  5,  0,  0,  0,
+    };
+    static final int[] QUEEN_TABLE = {
+            -20, -10, -10,  -5,  -5, -10, -10, -20,
+            -10,   0,   0,   0,   0,   0,   0, -10,
+            -10,   0,   5,   5,   5,   5,   0, -10,
+             -5,   0,   5,   5,   5,   5,   0,  -5,
+              0,   0,   5,   5,   5,   5,   0,  -5,
+            -10,   5,   5,   5,   5,   5,   0, -10,
+            -10,   0,   0,   0,   0,   0,   0, -10,
+            -20, -10, -10,  -5,  -5, -10, -10, -20,
+    };
+    static final int[] KING_TABLE = {
+            -30, -40, -40, -50, -50, -40, -40, -30,
+            -30, -40, -40, -50, -50, -40, -40, -30,
+            -30, -40, -40, -50, -50, -40, -40, -30,
+            -30, -40, -40, -50, -50, -40, -40, -30,
+            -20, -30, -30, -40, -40, -30, -30, -20,
+            -10, -20, -20, -20, -20, -20, -20, -10,
+             20,  20,   0,   0,   0,   0,  20,  20,
+             20,  30,  10,   0,   0,  10,  30,  20,
+    };
+    // once the queens and most pieces are gone the king belongs in the center
+    static final int[] KING_ENDGAME_TABLE = {
+            -50, -40, -30, -20, -20, -30, -40, -50,
+            -30, -20, -10,   0,   0, -10, -20, -30,
+            -30, -10,  20,  30,  30,  20, -10, -30,
+            -30, -10,  30,  40,  40,  30, -10, -30,
+            -30, -10,  30,  40,  40,  30, -10, -30,
+            -30, -10,  20,  30,  30,  20, -10, -30,
+            -30, -30,   0,   0,   0,   0, -30, -30,
+            -50, -30, -30, -30, -30, -30, -30, -50,
+    };
+
+    private static final int[][] MIDDLEGAME_TABLES = {PAWN_TABLE, KNIGHT_TABLE, BISHOP_TABLE, ROOK_TABLE, QUEEN_TABLE, KING_TABLE};
+    private static final int[][] ENDGAME_TABLES = {PAWN_TABLE, KNIGHT_TABLE, BISHOP_TABLE, ROOK_TABLE, QUEEN_TABLE, KING_ENDGAME_TABLE};
+
+    // what a piece code on a square adds to Position's running sums: negative for black pieces
+    static final int[][] MIDDLEGAME = new int[12][64];
+    static final int[][] ENDGAME = new int[12][64];
+    static final int[] PHASE = new int[12];
+    static {
+        for (int code = 0; code < 12; code++) {
+            int side = Position.side_of(code), type = Position.type_of(code);
+            int sign = side == Position.WHITE_SIDE ? 1 : -1;
+            PHASE[code] = PHASE_WEIGHTS[type];
+            for (int square = 0; square < 64; square++) {
+                int seen_as = side == Position.WHITE_SIDE ? square : square ^ 56;
+                MIDDLEGAME[code][square] = sign * (PIECE_VALUES[type] + MIDDLEGAME_TABLES[type][seen_as]);
+                ENDGAME[code][square] = sign * (PIECE_VALUES[type] + ENDGAME_TABLES[type][seen_as]);
+            }
+        }
+    }
+
+    private Evaluation() {}
+
+    public static int material(Position pos, int side) {
+        int material = 0;
+        for (int type = Position.PAWN; type < Position.KING; type++) {
+            material += Long.bitCount(pos.pieces(side, type)) * PIECE_VALUES[type];
+        }
+        return material;
+    }
+
+    // from white's point of view
+    public static int score(Position pos, PawnTable pawns) {
+        int slot = pawns.probe(pos);
+        int middlegame = pos.middlegame + pawns.middlegame(slot);
+        int endgame = pos.endgame + pawns.endgame(slot);
+
+        for (int side = Position.WHITE_SIDE; side <= Position.BLACK_SIDE; side++) {
+            int sign = side == Position.WHITE_SIDE ? 1 : -1;
+            // squares held by its own pieces or covered by enemy pawns don't count
+            long area = ~pos.occupancy[side] & ~Bitboards.pawn_attacks(pos.pieces(side ^ 1, Position.PAWN), side ^ 1);
+            for (int type = Position.KNIGHT; type <= Position.QUEEN; type++) {
+                long pieces = pos.pieces(side, type);
+                while (pieces != 0) {
+                    int square = Bitboards.lsb(pieces);
+                    pieces &= pieces - 1;
+                    long attacks = type == Position.KNIGHT ? Attacks.KNIGHT[square]
+                            : type == Position.BISHOP ? Attacks.bishop(square, pos.occupied)
+                            : type == Position.ROOK ? Attacks.rook(square, pos.occupied)
+                            : Attacks.queen(square, pos.occupied);
+                    int mobility = Bitboards.count(attacks & area) - MOBILITY_BASE[type];
+                    middlegame += sign * mobility * MOBILITY_MG[type];
+                    endgame += sign * mobility * MOBILITY_EG[type];
+                }
+            }
+        }
+
+        int phase = Math.min(pos.phase, MAX_PHASE); // promotions can push it past the starting material
+        return (middlegame * phase + endgame * (MAX_PHASE - phase)) / MAX_PHASE;
+    }
+
+    public static int evaluate(Position pos, PawnTable pawns) {
+        int score = score(pos, pawns);
+        return pos.side_to_move() == Position.WHITE_SIDE ? score : -score;
+    }
+}
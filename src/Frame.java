@@ -5,7 +5,10 @@ public class Frame extends JPanel {
     public JFrame frame;
     public int width = 800;
     public int height = 700;
-    private final Engine engine = new Engine(width, height, this);
+    public static final int HASH_MB = 64;
+    // one core is left to the Swing thread so the window keeps up while the engine thinks
+    public static final int SEARCH_THREADS = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+    private final Engine engine = new Engine(width, height, this, HASH_MB, SEARCH_THREADS);
     private final Board board = new Board(width, height, this, engine);
     JTextField fen;
 
@@ -48,6 +51,8 @@ public class Frame extends JPanel {
     }
 
     public static void main(String[] args) {
+        Attacks.init();
+        Sprites.load();
         new Frame();
     }
 }
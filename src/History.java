@@ -0,0 +1,67 @@
+/*
+What the search has learned about quiet moves, for ordering them (see MovePicker):
+    butterfly       how often a move from-to caused a cutoff, by side, whatever the position
+    killers         the last two quiet moves that cut off at each ply
+    counter_moves   the quiet move that last refuted a move, by the piece that moved and where it went
+Each search thread has its own, so nothing here is shared.
+ */
+public final class History {
+    // butterfly scores stay within +-MAX
+    public static final int MAX = 16384;
+
+    final int[][][] butterfly = new int[2][64][64];
+    final int[][] killers = new int[MoveBuffer.MAX_PLY][2];
+    final int[][] counter_moves = new int[12][64];
+
+    /*
+    Before a new search: old scores are halved rather than dropped, killers belong to plies of the old
+    tree and are cleared
+     */
+    public void age() {
+        for (int[][] side : butterfly) {
+            for (int[] from : side) {
+                for (int to = 0; to < 64; to++) from[to] /= 2;
+            }
+        }
+        for (int[] ply : killers) java.util.Arrays.fill(ply, Move.NONE);
+    }
+
+    public int score(int side, int move) {
+        return butterfly[side][Move.from(move)][Move.to(move)];
+    }
+
+    public int counter_move(Position pos, int previous) {
+        if (previous == Move.NONE) return Move.NONE;
+        int to = Move.to(previous);
+        return counter_moves[pos.squares[to]][to];
+    }
+
+    /*
+    A quiet move caused a cutoff: it becomes a killer and the counter to the previous move, and gains
+    history while the quiet moves searched before it lose some
+     */
+    public void update(Position pos, int ply, int previous, int move, int depth, int[] tried, int tried_count) {
+        if (killers[ply][0] != move) {
+            killers[ply][1] = killers[ply][0];
+            killers[ply][0] = move;
+        }
+        if (previous != Move.NONE) {
+            int to = Move.to(previous);
+            counter_moves[pos.squares[to]][to] = move;
+        }
+
+        int side = pos.side_to_move();
+        int bonus = Math.min(depth * depth, 400);
+        add(side, move, bonus);
+        for (int i = 0; i < tried_count; i++) {
+            if (tried[i] != move) add(side, tried[i], -bonus);
+        }
+    }
+
+    // moves the score toward +-MAX by a step that shrinks as it gets there, so it never overflows
+    private void add(int side, int move, int bonus) {
+        int[] from = butterfly[side][Move.from(move)];
+        int to = Move.to(move);
+        from[to] += bonus - from[to] * Math.abs(bonus) / MAX;
+    }
+}
@@ -0,0 +1,170 @@
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/*
+Lazy SMP: every thread runs its own iterative-deepening search of the same root. The threads only
+cooperate through the shared transposition table, where each one finds the results the others already
+stored. Each worker keeps its own position copy, move buffers and history tables, so nothing
+else is shared and no thread ever waits on another.
+
+Thread 0 is the main thread: it enforces the limits, and once it returns the helpers are stopped. The
+reported move comes from whichever thread completed the deepest iteration.
+ */
+public class LazySmp {
+    private static final int EVAL_CACHE_MB = 8;
+
+    private final TranspositionTable tt;
+    final SearchOptions options = new SearchOptions(); // shared by every worker
+    final EvalCache eval_cache = new EvalCache(EVAL_CACHE_MB); // likewise
+    private Search[] workers;
+    private ExecutorService pool;
+
+    public LazySmp(TranspositionTable tt, int threads) {
+        this.tt = tt;
+        set_threads(threads);
+    }
+
+    public void set_threads(int threads) {
+        threads = Math.max(1, threads);
+        if (pool != null) pool.shutdownNow();
+
+        workers = new Search[threads];
+        for (int i = 0; i < threads; i++) workers[i] = new Search(null, tt, options, eval_cache);
+        pool = threads > 1 ? Executors.newFixedThreadPool(threads - 1, runnable -> {
+            Thread thread = new Thread(runnable, "search-helper");
+            thread.setDaemon(true);
+            return thread;
+        }) : null;
+    }
+
+    public int threads() {
+        return workers.length;
+    }
+
+    // nodes searched so far by all threads; read while they run, so only close to exact
+    public long nodes() {
+        long nodes = 0;
+        for (Search worker : workers) nodes += worker.nodes();
+        return nodes;
+    }
+
+    // may be called from any thread
+    public void stop() {
+        for (Search worker : workers) worker.stop();
+    }
+
+    public SearchResult think(Position root, SearchLimits limits) {
+        return think(root, limits, null);
+    }
+
+    /*
+    Same, reporting each iteration the main thread completes to on_iteration, with the node count of all
+    the threads
+     */
+    public SearchResult think(Position root, SearchLimits limits, java.util.function.Consumer<SearchResult> on_iteration) {
+        tt.new_search();
+        workers[0].on_iteration = on_iteration == null ? null : result -> {
+            SearchResult report = result.copy();
+            report.nodes = nodes();
+            on_iteration.accept(report);
+        };
+        for (Search worker : workers) worker.set_position(new Position(root));
+
+        // helpers run until the main thread is done. They only watch the clock's hard limit too, so that on
+        // a loaded machine whichever thread gets to run first notices the time is up
+        SearchLimits helper_limits = SearchLimits.depth(limits.depth);
+        if (limits.clock != null) helper_limits.movetime_ms = limits.clock.hard_ms;
+        java.util.List<Future<SearchResult>> helpers = new java.util.ArrayList<>(workers.length);
+        helpers.add(null); // thread 0 is this one
+        for (int i = 1; i < workers.length; i++) {
+            Search worker = workers[i];
+            int start_depth = 1 + (i & 1);
+            helpers.add(pool.submit(() -> worker.think(helper_limits, start_depth)));
+        }
+
+        SearchResult best = workers[0].think(limits);
+
+        stop();
+        long nodes = best.nodes;
+        SearchStats stats = new SearchStats();
+        stats.add(best.stats);
+        for (int i = 1; i < workers.length; i++) {
+            try {
+                SearchResult result = helpers.get(i).get();
+                nodes += result.nodes;
+                stats.add(result.stats);
+                if (result.depth > best.depth && result.best_move != Move.NONE) best = result;
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+        best.nodes = nodes;
+        best.stats = stats;
+        return best;
+    }
+
+    /*
+    Benchmark: searches a set of positions to a fixed depth with 1..N threads and prints nodes per second
+    and the time-to-depth speedup over one thread. Options named after the hash size are switched off,
+    to see what each one is worth.
+    Usage: LazySmp [max threads] [depth] [hash MB] [-option ...]
+     */
+    public static void main(String[] args) {
+        int max_threads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+        int depth = args.length > 1 ? Integer.parseInt(args[1]) : 9;
+        int hash_mb = args.length > 2 ? Integer.parseInt(args[2]) : 64;
+        SearchOptions options = new SearchOptions();
+        for (int i = 3; i < args.length; i++) {
+            if (!args[i].startsWith("-") || !options.set(args[i].substring(1), false)) {
+                System.err.println("unknown option " + args[i] + ", options are " + String.join(", ", SearchOptions.NAMES));
+                return;
+            }
+        }
+        String[] fens = {
+                Position.START_FEN,
+                "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+                "r1bq1rk1/pp2bppp/2n1pn2/3p4/2PP4/2N1PN2/PP3PPP/R2QKB1R w KQ - 0 8",
+                "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1",
+                "r4rk1/1pp1qppp/p1np1n2/2b1p1B1/2B1P1b1/P1NP1N2/1PP1QPPP/R4RK1 w - - 0 10",
+        };
+
+        Attacks.init();
+        System.out.println(Attacks.describe());
+        TranspositionTable tt = new TranspositionTable(hash_mb);
+        double base_ms = 0;
+        // doubling, with max_threads itself as the last step when it isn't a power of two
+        for (int threads = 1; threads <= max_threads;
+             threads = threads < max_threads && threads * 2 > max_threads ? max_threads : threads * 2) {
+            LazySmp smp = new LazySmp(tt, threads);
+            for (int i = 3; i < args.length; i++) smp.options.set(args[i].substring(1), false);
+            long total_nodes = 0, total_ms = 0, eval_hits = 0, eval_probes = 0;
+            long tt_hits = 0, tt_probes = 0, tt_overwrites = 0, hashfull = 0;
+            SearchStats stats = new SearchStats();
+            for (String fen : fens) {
+                tt.clear();
+                smp.eval_cache.clear();
+                long start = System.nanoTime();
+                SearchResult result = smp.think(new Position(fen), SearchLimits.depth(depth));
+                total_ms += (System.nanoTime() - start) / 1_000_000;
+                total_nodes += result.nodes;
+                stats.add(result.stats);
+                eval_hits += smp.eval_cache.hits();
+                eval_probes += smp.eval_cache.hits() + smp.eval_cache.misses();
+                tt_hits += tt.hits();
+                tt_probes += tt.hits() + tt.misses();
+                tt_overwrites += tt.overwrites();
+                hashfull += tt.hashfull();
+            }
+            if (threads == 1) base_ms = total_ms;
+            System.out.printf("threads %2d  time %7d ms  nodes %11d  nps %9d  speedup %.2f%n",
+                    threads, total_ms, total_nodes, total_nodes * 1000 / Math.max(1, total_ms),
+                    base_ms / Math.max(1, total_ms));
+            System.out.println("           " + stats + "  eval cache hits " + eval_hits * 100 / Math.max(1, eval_probes) + "%");
+            // hashfull is the average over the positions, each searched from an empty table
+            System.out.printf("           tt %d MB  hits %d%%  overwrites %d  hashfull %d permille%n",
+                    tt.size_mb(), tt_hits * 100 / Math.max(1, tt_probes), tt_overwrites, hashfull / fens.length);
+            smp.set_threads(1); // release the pool's threads
+        }
+    }
+}
@@ -1,33 +1,62 @@
 import java.awt.*;
 
+/*
+Moves are packed into an int for the generator and the search:
+    bits  0-5   from square
+    bits  6-11  to square
+    bits 12-14  promotion piece type, 0 if none (a pawn can't be promoted to, so 0 is free)
+    bits 15-17  type of the piece that moves
+    bits 18-21  flags
+0 is never a real move (a8 to a8), so it doubles as "no move".
+A Move object is only a decoded view of one of these for the UI.
+ */
 @SuppressWarnings("SpellCheckingInspection")
 public class Move {
-    Piece piece;
-    Piece captured = null;
+    public static final int NONE = 0;
+    public static final int CAPTURE = 1 << 18;
+    public static final int EN_PASSANT = 1 << 19;
+    public static final int CASTLE = 1 << 20;
+    public static final int DOUBLE_PUSH = 1 << 21;
+
     Point to;
     Point from;
+    final int code;
+
+    Move(int code) {
+        this.code = code;
+        this.from = new Point(from(code) & 7, from(code) >>> 3);
+        this.to = new Point(to(code) & 7, to(code) >>> 3);
+    }
+
+    public static int encode(int from, int to, int piece_type, int promotion, int flags) {
+        return from | (to << 6) | (promotion << 12) | (piece_type << 15) | flags;
+    }
 
-    double evaluation;
+    public static int from(int move) {
+        return move & 63;
+    }
+
+    public static int to(int move) {
+        return (move >>> 6) & 63;
+    }
+
+    public static int promotion(int move) {
+        return (move >>> 12) & 7;
+    }
 
-    Move(Piece piece, Point from, Point to, double evaluation) {
-        this.piece = piece;
-        this.to = to;
-        this.from = from;
-        this.evaluation = evaluation;
+    public static int piece_type(int move) {
+        return (move >>> 15) & 7;
     }
 
-    Move(Piece piece, Point from, Point to) {
-        this.piece = piece;
-        this.to = to;
-        this.from = from;
+    public static boolean is_capture(int move) {
+        return (move & CAPTURE) != 0;
     }
 
-    // Need this for en passant, where the move is different from the peice being captured
-    Move(Piece piece, Point from, Point to, Piece captured, double evaluation) {
-        this.piece = piece;
-        this.to = to;
-        this.from = from;
-        this.captured = captured;
-        this.evaluation = evaluation;
+    // long algebraic notation, e.g. "e2e4" or "e7e8q"
+    public static String to_string(int move) {
+        if (move == NONE) return "0000";
+        String s = Position.square_name(from(move)) + Position.square_name(to(move));
+        if (promotion(move) != 0) s += Position.PIECE_CHARS.charAt(6 + promotion(move));
+        return s;
     }
 }
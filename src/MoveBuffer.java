@@ -0,0 +1,14 @@
+/*
+Preallocated move storage, one row per ply. Generators write packed moves straight into a row, so a
+search reuses the same arrays for every node instead of building lists
+ */
+public final class MoveBuffer {
+    public static final int MAX_PLY = 128;
+    public static final int MAX_MOVES = 256; // the most legal moves in any position is 218
+
+    private final int[][] moves = new int[MAX_PLY][MAX_MOVES];
+
+    public int[] moves(int ply) {
+        return moves[ply];
+    }
+}
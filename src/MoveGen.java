@@ -0,0 +1,297 @@
+import java.util.ArrayList;
+
+/*
+Bitboard move generator. Targets for a whole set of pieces are produced with shifts and masks,
+then split back into single moves by popping bits. Moves are written as packed ints (see Move) into
+a caller's array starting at an index, and the index after the last move is returned.
+
+Only legal moves are produced. The checkers and the pinned pieces are found once per position, and from
+them two masks:
+    check mask  in check, the squares that capture the checker or block it; every square otherwise
+    pin line    for a pinned piece, the line through its king and the pinning slider, which it can't leave
+In double check only the king moves. The king may only step to squares that aren't attacked once it
+has left its own square, and en passant, which lifts two pieces off one rank at once, is tried on
+the occupancy. Nothing is made and unmade to test a move.
+
+The kind picks a subset: CAPTURES is every capture plus pushes that promote to a queen (the moves
+quiescence search looks at), QUIETS is everything else. Together they make up ALL
+ */
+public final class MoveGen {
+    public static final int ALL = 0, CAPTURES = 1, QUIETS = 2;
+
+    private static final int[] UNDER_PROMOTIONS = {Position.ROOK, Position.BISHOP, Position.KNIGHT};
+
+    // castling by side * 2 + (0 short, 1 long): the right, squares that must be empty, king destination
+    private static final int[] CASTLE_RIGHT = {Position.WHITE_OO, Position.WHITE_OOO, Position.BLACK_OO, Position.BLACK_OOO};
+    private static final long[] CASTLE_EMPTY = {0x6000000000000000L, 0x0E00000000000000L, 0x60L, 0x0EL};
+    private static final int[] CASTLE_TO = {62, 58, 6, 2};
+
+    private MoveGen() {}
+
+    /*
+    Legal moves as Move objects, for the UI. Searches should use the int[] version
+     */
+    public static ArrayList<Move> legal_moves(Position pos) {
+        int[] buffer = new int[MoveBuffer.MAX_MOVES];
+        int count = legal_moves(pos, buffer, 0);
+
+        ArrayList<Move> legal = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) legal.add(new Move(buffer[i]));
+        return legal;
+    }
+
+    public static int legal_moves(Position pos, int[] moves, int start) {
+        return generate(pos, moves, start, ALL);
+    }
+
+    // the quiet moves in the sense of the generation kinds: anything QUIETS produces
+    public static boolean is_quiet(int move) {
+        return !Move.is_capture(move) && Move.promotion(move) != Position.QUEEN;
+    }
+
+    /*
+    Is a move that came from somewhere else (the transposition table, a killer slot) legal here?
+    Checks it the way the generator would have produced it, then that it doesn't leave the king attacked
+     */
+    public static boolean is_legal(Position pos, int move) {
+        if (!is_pseudo_legal(pos, move)) return false;
+        int us = pos.side_to_move();
+        pos.make(move);
+        boolean legal = !pos.king_attacked(us);
+        pos.unmake(move);
+        return legal;
+    }
+
+    private static boolean is_pseudo_legal(Position pos, int move) {
+        if (move == Move.NONE) return false;
+        int us = pos.side_to_move();
+        int from = Move.from(move), to = Move.to(move), type = Move.piece_type(move);
+        if (type > Position.KING || pos.squares[from] != Position.code(us, type)) return false;
+
+        if ((move & Move.CASTLE) != 0) {
+            for (int i = us * 2; i < us * 2 + 2; i++) {
+                if (to == CASTLE_TO[i] && can_castle(pos, i)) return move == Move.encode(from, to, type, 0, Move.CASTLE);
+            }
+            return false;
+        }
+
+        long to_bit = Bitboards.bit(to);
+        if ((move & Move.EN_PASSANT) != 0) {
+            return type == Position.PAWN && to == pos.ep_square && (Attacks.PAWN[us][from] & to_bit) != 0
+                    && move == Move.encode(from, to, type, 0, Move.CAPTURE | Move.EN_PASSANT);
+        }
+
+        // the capture flag has to agree with what is on the target square
+        int target = pos.squares[to];
+        if (Move.is_capture(move) ? target == Position.EMPTY || Position.side_of(target) == us : target != Position.EMPTY) {
+            return false;
+        }
+
+        if (type == Position.PAWN) {
+            boolean last_rank = (to_bit & (Bitboards.RANK_8 | Bitboards.RANK_1)) != 0;
+            int promotion = Move.promotion(move);
+            if (last_rank != (promotion != 0) || promotion > Position.QUEEN) return false;
+            int forward = us == Position.WHITE_SIDE ? -8 : 8;
+            if (Move.is_capture(move)) return (Attacks.PAWN[us][from] & to_bit) != 0 && (move & Move.DOUBLE_PUSH) == 0;
+            if ((move & Move.DOUBLE_PUSH) != 0) {
+                long start_rank = us == Position.WHITE_SIDE ? Bitboards.RANK_2 : Bitboards.RANK_7;
+                return to == from + 2 * forward && (Bitboards.bit(from) & start_rank) != 0
+                        && pos.squares[from + forward] == Position.EMPTY;
+            }
+            return to == from + forward;
+        }
+
+        if (Move.promotion(move) != 0 || (move & Move.DOUBLE_PUSH) != 0) return false;
+        long attacks;
+        switch (type) {
+            case Position.KNIGHT: attacks = Attacks.KNIGHT[from]; break;
+            case Position.BISHOP: attacks = Attacks.bishop(from, pos.occupied); break;
+            case Position.ROOK: attacks = Attacks.rook(from, pos.occupied); break;
+            case Position.QUEEN: attacks = Attacks.queen(from, pos.occupied); break;
+            default: attacks = Attacks.KING[from]; break;
+        }
+        return (attacks & to_bit) != 0;
+    }
+
+    // the rights imply king and rook are on their home squares
+    private static boolean can_castle(Position pos, int i) {
+        if ((pos.castling & CASTLE_RIGHT[i]) == 0 || (pos.occupied & CASTLE_EMPTY[i]) != 0) return false;
+        int them = (i >> 1) ^ 1;
+        int king = i < 2 ? 60 : 4;
+        int to = CASTLE_TO[i];
+        return !pos.is_attacked(king, them) && !pos.is_attacked((king + to) / 2, them) && !pos.is_attacked(to, them);
+    }
+
+    private static int add_moves(Position pos, int from, int type, long targets, int[] moves, int n) {
+        while (targets != 0) {
+            int to = Bitboards.lsb(targets);
+            targets &= targets - 1;
+            int flags = pos.squares[to] != Position.EMPTY ? Move.CAPTURE : 0;
+            moves[n++] = Move.encode(from, to, type, 0, flags);
+        }
+        return n;
+    }
+
+    /*
+    Pawn moves are generated set-wise; "offset" is how far the target is from where the pawn started.
+    A push that promotes counts as a capture when it makes a queen and as a quiet move otherwise
+     */
+    private static int add_pawn_moves(long targets, int offset, int flags, int kind, int[] moves, int n) {
+        while (targets != 0) {
+            int to = Bitboards.lsb(targets);
+            targets &= targets - 1;
+            int from = to - offset;
+            if ((Bitboards.bit(to) & (Bitboards.RANK_8 | Bitboards.RANK_1)) != 0) {
+                boolean capture = (flags & Move.CAPTURE) != 0;
+                if (kind != QUIETS) {
+                    moves[n++] = Move.encode(from, to, Position.PAWN, Position.QUEEN, flags);
+                }
+                if (kind == ALL || (kind == CAPTURES) == capture) {
+                    for (int promotion : UNDER_PROMOTIONS) {
+                        moves[n++] = Move.encode(from, to, Position.PAWN, promotion, flags);
+                    }
+                }
+            } else {
+                moves[n++] = Move.encode(from, to, Position.PAWN, 0, flags);
+            }
+        }
+        return n;
+    }
+
+    /*
+    Pushes and captures of a set of pawns, to squares in mask only
+     */
+    private static int add_pawns(Position pos, long pawns, long mask, int kind, int[] moves, int n) {
+        int us = pos.side_to_move();
+        long empty = ~pos.occupied;
+        // quiet pawn pushes are only wanted when they promote
+        long push_targets = (kind == CAPTURES ? empty & (Bitboards.RANK_8 | Bitboards.RANK_1) : empty) & mask;
+        long capture_targets = kind == QUIETS ? 0L : pos.occupancy[us ^ 1] & mask;
+
+        if (us == Position.WHITE_SIDE) {
+            long single = Bitboards.north(pawns) & empty;
+            n = add_pawn_moves(single & push_targets, -8, 0, kind, moves, n);
+            if (kind != CAPTURES) {
+                long double_push = Bitboards.north(single & (Bitboards.RANK_2 >>> 8)) & empty & mask;
+                n = add_pawn_moves(double_push, -16, Move.DOUBLE_PUSH, kind, moves, n);
+            }
+            n = add_pawn_moves(Bitboards.north(Bitboards.east(pawns)) & capture_targets, -7, Move.CAPTURE, kind, moves, n);
+            n = add_pawn_moves(Bitboards.north(Bitboards.west(pawns)) & capture_targets, -9, Move.CAPTURE, kind, moves, n);
+        } else {
+            long single = Bitboards.south(pawns) & empty;
+            n = add_pawn_moves(single & push_targets, 8, 0, kind, moves, n);
+            if (kind != CAPTURES) {
+                long double_push = Bitboards.south(single & (Bitboards.RANK_7 << 8)) & empty & mask;
+                n = add_pawn_moves(double_push, 16, Move.DOUBLE_PUSH, kind, moves, n);
+            }
+            n = add_pawn_moves(Bitboards.south(Bitboards.east(pawns)) & capture_targets, 9, Move.CAPTURE, kind, moves, n);
+            n = add_pawn_moves(Bitboards.south(Bitboards.west(pawns)) & capture_targets, 7, Move.CAPTURE, kind, moves, n);
+        }
+        return n;
+    }
+
+    // our pieces that stand alone between our king and an enemy slider looking at it
+    private static long pinned(Position pos, int us, int king) {
+        int them = us ^ 1;
+        long queens = pos.pieces(them, Position.QUEEN);
+        long snipers = (Attacks.rook(king, 0L) & (pos.pieces(them, Position.ROOK) | queens))
+                | (Attacks.bishop(king, 0L) & (pos.pieces(them, Position.BISHOP) | queens));
+        long pinned = 0L;
+        while (snipers != 0) {
+            int sniper = Bitboards.lsb(snipers);
+            snipers &= snipers - 1;
+            long blockers = Attacks.BETWEEN[king][sniper] & pos.occupied;
+            if (blockers != 0 && (blockers & (blockers - 1)) == 0) pinned |= blockers & pos.occupancy[us];
+        }
+        return pinned;
+    }
+
+    public static int generate(Position pos, int[] moves, int start, int kind) {
+        int n = start;
+        int us = pos.side_to_move();
+        int them = us ^ 1;
+        int king = pos.king_square(us);
+        long enemy = pos.occupancy[them];
+        // squares pieces may move to for this kind of generation
+        long targets = kind == CAPTURES ? enemy : kind == QUIETS ? ~pos.occupied : ~pos.occupancy[us];
+
+        // the king first: it is the only piece that may move in double check. Its squares are tested with
+        // the king lifted off, so it can't step back along the line of a slider checking it
+        long without_king = pos.occupied ^ Bitboards.bit(king);
+        long king_targets = Attacks.KING[king] & targets;
+        while (king_targets != 0) {
+            int to = Bitboards.lsb(king_targets);
+            king_targets &= king_targets - 1;
+            if ((pos.attackers_to(to, without_king) & enemy) != 0) continue;
+            int flags = pos.squares[to] != Position.EMPTY ? Move.CAPTURE : 0;
+            moves[n++] = Move.encode(king, to, Position.KING, 0, flags);
+        }
+
+        long checkers = pos.attackers_to(king, pos.occupied) & enemy;
+        if ((checkers & (checkers - 1)) != 0) return n;
+        long check_mask = checkers == 0 ? -1L : checkers | Attacks.BETWEEN[king][Bitboards.lsb(checkers)];
+        long pinned = pinned(pos, us, king);
+
+        // pawns: the free ones together, the pinned ones one at a time along their pin line
+        long pawns = pos.pieces(us, Position.PAWN);
+        n = add_pawns(pos, pawns & ~pinned, check_mask, kind, moves, n);
+        for (long bb = pawns & pinned; bb != 0; bb &= bb - 1) {
+            int from = Bitboards.lsb(bb);
+            n = add_pawns(pos, Bitboards.bit(from), check_mask & Attacks.LINE[king][from], kind, moves, n);
+        }
+        if (pos.ep_square >= 0 && kind != QUIETS) {
+            int captured = pos.ep_square + (us == Position.WHITE_SIDE ? 8 : -8);
+            long attackers = Attacks.PAWN[them][pos.ep_square] & pawns;
+            while (attackers != 0) {
+                int from = Bitboards.lsb(attackers);
+                attackers &= attackers - 1;
+                // both pawns leave their squares, which may open a line to the king
+                long occupied = pos.occupied ^ Bitboards.bit(from) ^ Bitboards.bit(captured) | Bitboards.bit(pos.ep_square);
+                if ((pos.attackers_to(king, occupied) & enemy & ~Bitboards.bit(captured)) != 0) continue;
+                moves[n++] = Move.encode(from, pos.ep_square, Position.PAWN, 0, Move.CAPTURE | Move.EN_PASSANT);
+            }
+        }
+
+        targets &= check_mask;
+        // a pinned knight can never move
+        long knights = pos.pieces(us, Position.KNIGHT) & ~pinned;
+        while (knights != 0) {
+            int from = Bitboards.lsb(knights);
+            knights &= knights - 1;
+            n = add_moves(pos, from, Position.KNIGHT, Attacks.KNIGHT[from] & targets, moves, n);
+        }
+
+        long bishops = pos.pieces(us, Position.BISHOP);
+        while (bishops != 0) {
+            int from = Bitboards.lsb(bishops);
+            bishops &= bishops - 1;
+            n = add_moves(pos, from, Position.BISHOP, Attacks.bishop(from, pos.occupied) & targets & pin_line(pinned, king, from), moves, n);
+        }
+
+        long rooks = pos.pieces(us, Position.ROOK);
+        while (rooks != 0) {
+            int from = Bitboards.lsb(rooks);
+            rooks &= rooks - 1;
+            n = add_moves(pos, from, Position.ROOK, Attacks.rook(from, pos.occupied) & targets & pin_line(pinned, king, from), moves, n);
+        }
+
+        long queens = pos.pieces(us, Position.QUEEN);
+        while (queens != 0) {
+            int from = Bitboards.lsb(queens);
+            queens &= queens - 1;
+            n = add_moves(pos, from, Position.QUEEN, Attacks.queen(from, pos.occupied) & targets & pin_line(pinned, king, from), moves, n);
+        }
+
+        if (kind == CAPTURES || checkers != 0) return n;
+
+        for (int i = us * 2; i < us * 2 + 2; i++) {
+            if (can_castle(pos, i)) moves[n++] = Move.encode(king, CASTLE_TO[i], Position.KING, 0, Move.CASTLE);
+        }
+        return n;
+    }
+
+    // where a piece on from may go as far as pins are concerned
+    private static long pin_line(long pinned, int king, int from) {
+        return (pinned & Bitboards.bit(from)) != 0 ? Attacks.LINE[king][from] : -1L;
+    }
+}
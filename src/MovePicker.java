@@ -0,0 +1,151 @@
+/*
+Hands out the moves of one node best first, in stages, so that when an early move cuts off the later
+stages are never generated or sorted:
+    1. the transposition table move
+    2. captures that don't lose material by SEE, most valuable victim first
+    3. the two killer moves of the ply
+    4. the counter-move to the opponent's last move
+    5. quiet moves by butterfly history
+    6. the captures that lose material
+Table, killer and counter moves were found in other positions, so they are checked for legality
+before they are handed out; everything else comes from the legal generator. Each stage skips the
+moves an earlier stage already gave.
+
+In quiescence mode only the captures are given, by MVV-LVA, and SEE is left to the caller.
+ */
+public final class MovePicker {
+    private static final int TT = 0, GEN_CAPTURES = 1, GOOD_CAPTURES = 2, KILLER_1 = 3, KILLER_2 = 4,
+            COUNTER = 5, GEN_QUIETS = 6, QUIETS = 7, BAD_CAPTURES = 8, DONE = 9,
+            Q_GEN_CAPTURES = 10, Q_CAPTURES = 11;
+
+    private final int[] moves;
+    private final int[] scores = new int[MoveBuffer.MAX_MOVES];
+    private Position pos;
+    private History history;
+
+    private int stage;
+    private int tt_move, killer_1, killer_2, counter;
+    private int cur, end, bad_end;
+
+    public MovePicker(int[] moves) {
+        this.moves = moves;
+    }
+
+    public void init(Position pos, History history, int tt_move, int ply, int previous) {
+        this.pos = pos;
+        this.history = history;
+        this.tt_move = tt_move;
+        killer_1 = history.killers[ply][0];
+        killer_2 = history.killers[ply][1];
+        counter = history.counter_move(pos, previous);
+        stage = TT;
+    }
+
+    public void init_quiescence(Position pos) {
+        this.pos = pos;
+        tt_move = killer_1 = killer_2 = counter = Move.NONE;
+        stage = Q_GEN_CAPTURES;
+    }
+
+    // the next move to search, or Move.NONE when there are none left
+    public int next() {
+        while (true) {
+            switch (stage) {
+                case TT:
+                    stage = GEN_CAPTURES;
+                    if (MoveGen.is_legal(pos, tt_move)) return tt_move;
+                    break;
+
+                case GEN_CAPTURES:
+                case Q_GEN_CAPTURES:
+                    cur = bad_end = 0;
+                    end = MoveGen.generate(pos, moves, 0, MoveGen.CAPTURES);
+                    for (int i = 0; i < end; i++) scores[i] = mvv_lva(moves[i]);
+                    stage++;
+                    break;
+
+                case GOOD_CAPTURES:
+                    while (cur < end) {
+                        int move = pick_best();
+                        if (move == tt_move) continue;
+                        if (See.see_ge(pos, move, 0)) return move;
+                        moves[bad_end++] = move; // cur is past it, so the slot is free
+                    }
+                    stage = KILLER_1;
+                    break;
+
+                case KILLER_1:
+                    stage = KILLER_2;
+                    if (killer_1 != tt_move && MoveGen.is_legal(pos, killer_1)) return killer_1;
+                    break;
+
+                case KILLER_2:
+                    stage = COUNTER;
+                    if (killer_2 != tt_move && killer_2 != killer_1 && MoveGen.is_legal(pos, killer_2)) return killer_2;
+                    break;
+
+                case COUNTER:
+                    stage = GEN_QUIETS;
+                    if (counter != tt_move && counter != killer_1 && counter != killer_2
+                            && MoveGen.is_legal(pos, counter)) {
+                        return counter;
+                    }
+                    break;
+
+                case GEN_QUIETS:
+                    // quiet moves go after the captures, which still hold the bad ones at the front
+                    cur = end;
+                    end = MoveGen.generate(pos, moves, end, MoveGen.QUIETS);
+                    int side = pos.side_to_move();
+                    for (int i = cur; i < end; i++) scores[i] = history.score(side, moves[i]);
+                    stage = QUIETS;
+                    break;
+
+                case QUIETS:
+                    while (cur < end) {
+                        int move = pick_best();
+                        if (move != tt_move && move != killer_1 && move != killer_2 && move != counter) return move;
+                    }
+                    cur = 0;
+                    stage = BAD_CAPTURES;
+                    break;
+
+                case BAD_CAPTURES:
+                    // already in MVV-LVA order, from when they were picked
+                    if (cur < bad_end) return moves[cur++];
+                    stage = DONE;
+                    break;
+
+                case Q_CAPTURES:
+                    if (cur < end) return pick_best();
+                    stage = DONE;
+                    break;
+
+                default:
+                    return Move.NONE;
+            }
+        }
+    }
+
+    // one step of a selection sort: moves the best remaining move to cur and returns it
+    private int pick_best() {
+        int best = cur;
+        for (int i = cur + 1; i < end; i++) {
+            if (scores[i] > scores[best]) best = i;
+        }
+        int move = moves[best];
+        moves[best] = moves[cur];
+        scores[best] = scores[cur];
+        moves[cur] = move;
+        cur++;
+        return move;
+    }
+
+    // most valuable victim first, and among equal victims the least valuable attacker; queen promotions count as taking a queen
+    private int mvv_lva(int move) {
+        int victim = See.captured(pos, move);
+        int score = victim < 0 ? 0 : See.value(victim) * 8 - Move.piece_type(move);
+        if (Move.promotion(move) == Position.QUEEN) score += See.value(Position.QUEEN) * 8;
+        return score;
+    }
+}
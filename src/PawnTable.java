@@ -0,0 +1,159 @@
+/*
+Pawn structure evaluation and the cache that makes it cheap. The structure terms depend only on where
+the pawns are, and pawns move rarely, so the result is stored under Position's pawn-only Zobrist key
+and nearly every probe is a hit. Each search thread has its own table, so there is no locking.
+
+Terms, per pawn, from the pawn's own point of view:
+    doubled     another of its pawns further up the same file
+    isolated    no pawns of its own on the adjacent files
+    backward    can't be supported by a pawn beside or behind it, and its stop square is attacked
+    connected   defended by a pawn, or standing next to one
+    passed      no enemy pawns ahead on its own or the adjacent files, by how far it has got
+    candidate   not passed yet, but with a clear file and at least as many helpers as blockers
+The bitboard of passed pawns is cached too, for terms that need the pieces (they can't be cached here).
+ */
+public class PawnTable {
+    private static final int DOUBLED_MG = -10, DOUBLED_EG = -20;
+    private static final int ISOLATED_MG = -10, ISOLATED_EG = -15;
+    private static final int BACKWARD_MG = -8, BACKWARD_EG = -10;
+    // by rank counted from the pawn's own side
+    private static final int[] CONNECTED = {0, 5, 7, 10, 18, 30, 50, 0};
+    private static final int[] PASSED_MG = {0, 5, 10, 15, 30, 50, 80, 0};
+    private static final int[] PASSED_EG = {0, 10, 15, 25, 50, 90, 140, 0};
+
+    // squares ahead of a pawn on its file, and ahead on its file and both neighbours, by side and square
+    private static final long[][] FORWARD_FILE = new long[2][64];
+    private static final long[][] PASSED_SPAN = new long[2][64];
+    private static final long[] ADJACENT_FILES = new long[8];
+    static {
+        for (int file = 0; file < 8; file++) {
+            long f = Bitboards.FILE_A << file;
+            ADJACENT_FILES[file] = Bitboards.east(f) | Bitboards.west(f);
+        }
+        for (int square = 0; square < 64; square++) {
+            long file = Bitboards.FILE_A << (square & 7);
+            long span = file | ADJACENT_FILES[square & 7];
+            // ranks above the square (towards index 0) and below it
+            long above = square < 8 ? 0L : -1L >>> (64 - (square & ~7));
+            long below = square >= 56 ? 0L : -1L << ((square & ~7) + 8);
+            FORWARD_FILE[Position.WHITE_SIDE][square] = file & above;
+            FORWARD_FILE[Position.BLACK_SIDE][square] = file & below;
+            PASSED_SPAN[Position.WHITE_SIDE][square] = span & above;
+            PASSED_SPAN[Position.BLACK_SIDE][square] = span & below;
+        }
+    }
+
+    private final long[] keys;
+    private final int[] middlegame;
+    private final int[] endgame;
+    private final long[] passed;
+    private final int mask;
+
+    private long hits, probes;
+
+    // size is rounded down to a power of two entries
+    public PawnTable(int entries) {
+        int size = Integer.highestOneBit(Math.max(1, entries));
+        keys = new long[size];
+        middlegame = new int[size];
+        endgame = new int[size];
+        passed = new long[size];
+        mask = size - 1;
+        // key 0 would match an empty slot, so empty slots get a key no pawn structure will have
+        java.util.Arrays.fill(keys, -1L);
+    }
+
+    /*
+    Returns the slot holding the position's pawn structure, evaluating it first if it isn't cached
+     */
+    public int probe(Position pos) {
+        probes++;
+        long key = pos.pawn_key();
+        int slot = (int) key & mask;
+        if (keys[slot] == key) {
+            hits++;
+            return slot;
+        }
+        keys[slot] = key;
+        evaluate(pos, slot);
+        return slot;
+    }
+
+    // from white's point of view
+    public int middlegame(int slot) {
+        return middlegame[slot];
+    }
+
+    public int endgame(int slot) {
+        return endgame[slot];
+    }
+
+    // passed pawns of both sides
+    public long passed(int slot) {
+        return passed[slot];
+    }
+
+    public long hits() {
+        return hits;
+    }
+
+    public long probes() {
+        return probes;
+    }
+
+    public void reset_counters() {
+        hits = probes = 0;
+    }
+
+    private void evaluate(Position pos, int slot) {
+        int mg = 0, eg = 0;
+        long all_passed = 0L;
+        for (int side = Position.WHITE_SIDE; side <= Position.BLACK_SIDE; side++) {
+            int sign = side == Position.WHITE_SIDE ? 1 : -1;
+            int them = side ^ 1;
+            long ours = pos.pieces(side, Position.PAWN);
+            long theirs = pos.pieces(them, Position.PAWN);
+
+            long pawns = ours;
+            while (pawns != 0) {
+                int square = Bitboards.lsb(pawns);
+                pawns &= pawns - 1;
+                int file = square & 7;
+                int rank = side == Position.WHITE_SIDE ? 7 - (square >>> 3) : square >>> 3;
+                int stop = side == Position.WHITE_SIDE ? square - 8 : square + 8;
+                long neighbours = ours & ADJACENT_FILES[file];
+
+                boolean doubled = (FORWARD_FILE[side][square] & ours) != 0;
+                boolean opposed = (FORWARD_FILE[side][square] & theirs) != 0;
+                boolean isolated = neighbours == 0;
+                // pawns beside or behind it on the adjacent files are the ones that could ever support it
+                long helpers = neighbours & ~PASSED_SPAN[side][square];
+                boolean backward = !isolated && helpers == 0 && (Attacks.PAWN[side][stop] & theirs) != 0;
+                boolean supported = (Attacks.PAWN[them][square] & ours) != 0;
+                boolean phalanx = (neighbours & (Bitboards.RANK_8 << (square & ~7))) != 0;
+
+                int s_mg = 0, s_eg = 0;
+                if (doubled) { s_mg += DOUBLED_MG; s_eg += DOUBLED_EG; }
+                if (isolated) { s_mg += ISOLATED_MG; s_eg += ISOLATED_EG; }
+                else if (backward) { s_mg += BACKWARD_MG; s_eg += BACKWARD_EG; }
+                if (supported || phalanx) { s_mg += CONNECTED[rank]; s_eg += CONNECTED[rank] / 2; }
+
+                long blockers = PASSED_SPAN[side][square] & theirs;
+                if (blockers == 0 && !doubled) {
+                    all_passed |= Bitboards.bit(square);
+                    s_mg += PASSED_MG[rank];
+                    s_eg += PASSED_EG[rank];
+                } else if (!opposed && !doubled && Bitboards.count(helpers) >= Bitboards.count(blockers)) {
+                    s_mg += PASSED_MG[rank] / 3;
+                    s_eg += PASSED_EG[rank] / 3;
+                }
+
+                mg += sign * s_mg;
+                eg += sign * s_eg;
+            }
+        }
+        middlegame[slot] = mg;
+        endgame[slot] = eg;
+        passed[slot] = all_passed;
+    }
+}
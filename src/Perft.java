@@ -0,0 +1,163 @@
+/*
+Move generator check and benchmark: counts the leaf nodes of the legal move tree to a fixed depth
+("perft"), which known positions have published counts for. Runs without any Swing.
+
+    Perft <fen | startpos> <depth> [options]    counts one position
+    Perft suite [depth cap] [options]           runs the standard positions and checks their counts
+options:
+    --divide    node count under each root move, to find which move a wrong count comes from
+    --bulk      count the moves at depth 1 instead of making each one (the speed benchmark setting)
+    --hash MB   cache subtree counts by position key and depth, so transpositions are counted once
+ */
+public class Perft {
+    // standard test positions with their published counts, from depth 1 up
+    private static final String[] SUITE_FENS = {
+            Position.START_FEN,
+            "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1", // "Kiwipete"
+            "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1",
+            "r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1",
+            "rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8",
+            "r4rk1/1pp1qppp/p1np1n2/2b1p1B1/2B1P1b1/P1NP1N2/1PP1QPPP/R4RK1 w - - 0 10",
+    };
+    private static final long[][] SUITE_COUNTS = {
+            {20, 400, 8902, 197281, 4865609, 119060324},
+            {48, 2039, 97862, 4085603, 193690690},
+            {14, 191, 2812, 43238, 674624, 11030083},
+            {6, 264, 9467, 422333, 15833292},
+            {44, 1486, 62379, 2103487, 89941194},
+            {46, 2079, 89890, 3894594, 164075551},
+    };
+
+    private final Position pos;
+    private final MoveBuffer buffer = new MoveBuffer();
+    private final boolean bulk;
+
+    // hash of subtree counts: the key is the position key mixed with the depth
+    private final long[] hash_keys;
+    private final long[] hash_counts;
+    private final int hash_mask;
+
+    public Perft(Position pos, boolean bulk, int hash_mb) {
+        this.pos = pos;
+        this.bulk = bulk;
+        int entries = hash_mb > 0 ? Integer.highestOneBit((int) Math.min(1 << 28, hash_mb * 1024L * 1024L / 16)) : 0;
+        hash_keys = new long[entries];
+        hash_counts = new long[entries];
+        hash_mask = entries - 1;
+    }
+
+    public long count(int depth) {
+        return count(depth, 0);
+    }
+
+    private long count(int depth, int ply) {
+        if (depth == 0) return 1;
+
+        int[] moves = buffer.moves(ply);
+        int n = MoveGen.legal_moves(pos, moves, 0);
+        if (bulk && depth == 1) return n;
+
+        long key = 0;
+        int slot = 0;
+        if (hash_keys.length > 0 && depth > 1) {
+            key = pos.key() ^ (depth * 0x9E3779B97F4A7C15L);
+            slot = (int) key & hash_mask;
+            if (hash_keys[slot] == key) return hash_counts[slot];
+        }
+
+        long nodes = 0;
+        for (int i = 0; i < n; i++) {
+            pos.make(moves[i]);
+            nodes += count(depth - 1, ply + 1);
+            pos.unmake(moves[i]);
+        }
+
+        if (hash_keys.length > 0 && depth > 1) {
+            hash_keys[slot] = key;
+            hash_counts[slot] = nodes;
+        }
+        return nodes;
+    }
+
+    /*
+    Prints the count under each root move, then the total
+     */
+    public long divide(int depth) {
+        int[] moves = new int[MoveBuffer.MAX_MOVES];
+        int n = MoveGen.legal_moves(pos, moves, 0);
+        long total = 0;
+        for (int i = 0; i < n; i++) {
+            pos.make(moves[i]);
+            long nodes = depth > 1 ? count(depth - 1, 1) : 1;
+            pos.unmake(moves[i]);
+            System.out.println(Move.to_string(moves[i]) + ": " + nodes);
+            total += nodes;
+        }
+        System.out.println();
+        return total;
+    }
+
+    private static void report(String label, long nodes, long nanos) {
+        long ms = Math.max(1, nanos / 1_000_000);
+        System.out.printf("%s nodes %d  time %d ms  nps %d%n", label, nodes, ms, nodes * 1000 / ms);
+    }
+
+    /*
+    Runs every suite position to its deepest published depth, or to the cap. Returns false if any
+    count is wrong
+     */
+    private static boolean suite(int depth_cap, boolean bulk, int hash_mb) {
+        boolean ok = true;
+        long total_nodes = 0, total_nanos = 0;
+        for (int i = 0; i < SUITE_FENS.length; i++) {
+            int depth = Math.min(depth_cap, SUITE_COUNTS[i].length);
+            long expected = SUITE_COUNTS[i][depth - 1];
+            Perft perft = new Perft(new Position(SUITE_FENS[i]), bulk, hash_mb);
+            long start = System.nanoTime();
+            long nodes = perft.count(depth);
+            long nanos = System.nanoTime() - start;
+            total_nodes += nodes;
+            total_nanos += nanos;
+            boolean match = nodes == expected;
+            ok &= match;
+            report((match ? "ok    " : "FAIL  ") + "position " + (i + 1) + " depth " + depth, nodes, nanos);
+            if (!match) System.out.println("      expected " + expected + " for " + SUITE_FENS[i]);
+        }
+        report("total", total_nodes, total_nanos);
+        return ok;
+    }
+
+    public static void main(String[] args) {
+        if (args.length == 0) {
+            System.err.println("usage: Perft <fen | startpos> <depth> [--divide] [--bulk] [--hash MB]");
+            System.err.println("       Perft suite [depth cap] [--bulk] [--hash MB]");
+            System.exit(2);
+        }
+
+        boolean divide = false, bulk = false;
+        int hash_mb = 0;
+        java.util.List<String> positional = new java.util.ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--divide" -> divide = true;
+                case "--bulk" -> bulk = true;
+                case "--hash" -> hash_mb = Integer.parseInt(args[++i]);
+                default -> positional.add(args[i]);
+            }
+        }
+
+        Attacks.init();
+        System.out.println(Attacks.describe());
+        if (positional.get(0).equals("suite")) {
+            int depth_cap = positional.size() > 1 ? Integer.parseInt(positional.get(1)) : 4;
+            System.exit(suite(depth_cap, bulk, hash_mb) ? 0 : 1);
+        }
+
+        String fen = positional.get(0).equals("startpos") ? Position.START_FEN : positional.get(0);
+        int depth = Integer.parseInt(positional.get(1));
+        Perft perft = new Perft(new Position(fen), bulk, hash_mb);
+        long start = System.nanoTime();
+        long nodes = divide ? perft.divide(depth) : perft.count(depth);
+        report("depth " + depth, nodes, System.nanoTime() - start);
+    }
+}
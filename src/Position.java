@@ -0,0 +1,471 @@
+/*
+Compact position built on bitboards: one long per piece type and color plus per-side occupancy.
+A mailbox (squares[]) is kept next to the bitboards so "what is on this square" is a single lookup.
+Square indices match the Piece[][] board, see Bitboards.
+ */
+public class Position {
+    public static final String START_FEN = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1";
+
+    // side indices used to index the bitboard arrays (Piece.WHITE/BLACK are the UI's colors)
+    public static final int WHITE_SIDE = 0;
+    public static final int BLACK_SIDE = 1;
+
+    public static final int PAWN = 0, KNIGHT = 1, BISHOP = 2, ROOK = 3, QUEEN = 4, KING = 5;
+    public static final int EMPTY = -1;
+    // piece codes are side * 6 + type, so this string maps a code to its FEN character
+    public static final String PIECE_CHARS = "PNBRQKpnbrqk";
+
+    public static final int WHITE_OO = 1, WHITE_OOO = 2, BLACK_OO = 4, BLACK_OOO = 8;
+
+    // castling rights that survive a move touching the given square
+    private static final int[] CASTLING_MASK = new int[64];
+    static {
+        java.util.Arrays.fill(CASTLING_MASK, 15);
+        CASTLING_MASK[60] &= ~(WHITE_OO | WHITE_OOO); // e1
+        CASTLING_MASK[63] &= ~WHITE_OO;               // h1
+        CASTLING_MASK[56] &= ~WHITE_OOO;              // a1
+        CASTLING_MASK[4]  &= ~(BLACK_OO | BLACK_OOO); // e8
+        CASTLING_MASK[7]  &= ~BLACK_OO;               // h8
+        CASTLING_MASK[0]  &= ~BLACK_OOO;              // a8
+    }
+
+    final long[] pieces = new long[12];
+    final long[] occupancy = new long[2];
+    long occupied;
+    final int[] squares = new int[64];
+
+    int side = WHITE_SIDE;
+    int castling;
+    int ep_square = -1; // square a pawn can capture onto en passant, -1 if none
+    int halfmove_clock;
+    int fullmove_number = 1;
+    long key; // Zobrist key, kept up to date by make/unmake
+    long pawn_key; // Zobrist key of the pawns alone, for the pawn structure cache (see PawnTable)
+    // running evaluation sums from white's point of view, kept up to date by put/remove (see Evaluation)
+    int middlegame, endgame, phase;
+
+    // undo stack, one slot per made move. Preallocated so make/unmake never allocate during a search
+    private static final int UNDO_CAPACITY = 1024;
+    private int[] undo_moved = new int[UNDO_CAPACITY];    // piece that moved, so promotions unmake to a pawn
+    private int[] undo_captured = new int[UNDO_CAPACITY];
+    private int[] undo_castling = new int[UNDO_CAPACITY];
+    private int[] undo_ep = new int[UNDO_CAPACITY];
+    private int[] undo_halfmove = new int[UNDO_CAPACITY];
+    private long[] undo_key = new long[UNDO_CAPACITY];
+    private int[] undo_plies_from_null = new int[UNDO_CAPACITY]; // only written by null moves
+    private int undo_size;
+
+    // keys of the positions the game and the search went through, as a ring: the position i plies back is
+    // at (history_size - i) & HISTORY_MASK. A repetition can't reach back past the last capture or pawn
+    // move, and from 100 plies on the game is drawn anyway, so the ring only needs to cover that far
+    private static final int HISTORY_SIZE = 128, HISTORY_MASK = HISTORY_SIZE - 1;
+    private final long[] history = new long[HISTORY_SIZE];
+    private int history_size;
+    // positions on either side of a null move aren't really repeated, so the scan stops there too
+    private int plies_from_null;
+
+    public Position(String fen) {
+        set_fen(fen);
+    }
+
+    /*
+    Copies the board state. The copy starts with an empty undo stack, so it can't unmake the moves that
+    led to the original, but it keeps their keys so it still sees repetitions of earlier positions
+     */
+    public Position(Position other) {
+        System.arraycopy(other.pieces, 0, pieces, 0, 12);
+        System.arraycopy(other.occupancy, 0, occupancy, 0, 2);
+        System.arraycopy(other.squares, 0, squares, 0, 64);
+        occupied = other.occupied;
+        side = other.side;
+        castling = other.castling;
+        ep_square = other.ep_square;
+        halfmove_clock = other.halfmove_clock;
+        fullmove_number = other.fullmove_number;
+        key = other.key;
+        pawn_key = other.pawn_key;
+        middlegame = other.middlegame;
+        endgame = other.endgame;
+        phase = other.phase;
+        System.arraycopy(other.history, 0, history, 0, HISTORY_SIZE);
+        history_size = other.history_size;
+        plies_from_null = other.plies_from_null;
+    }
+
+    public static int code(int side, int type) {
+        return side * 6 + type;
+    }
+
+    public static int type_of(int code) {
+        return code % 6;
+    }
+
+    public static int side_of(int code) {
+        return code / 6;
+    }
+
+    // converts a Piece.WHITE / Piece.BLACK color into a side index
+    public static int side_from_color(int color) {
+        return color == Piece.WHITE ? WHITE_SIDE : BLACK_SIDE;
+    }
+
+    public void set_fen(String fen) {
+        java.util.Arrays.fill(pieces, 0L);
+        java.util.Arrays.fill(occupancy, 0L);
+        java.util.Arrays.fill(squares, EMPTY);
+        occupied = 0L;
+        middlegame = endgame = phase = 0;
+        pawn_key = 0L;
+
+        String[] fields = fen.trim().split("\\s+");
+        int square = 0;
+        for (char c : fields[0].toCharArray()) {
+            if (c == '/') continue;
+            if (c >= '1' && c <= '8') {
+                square += c - '0';
+                continue;
+            }
+            int code = PIECE_CHARS.indexOf(c);
+            if (code < 0) throw new IllegalArgumentException("Bad FEN piece: " + c);
+            put(code, square);
+            square++;
+        }
+
+        side = fields.length > 1 && fields[1].equals("b") ? BLACK_SIDE : WHITE_SIDE;
+
+        castling = 0;
+        if (fields.length > 2) {
+            for (char c : fields[2].toCharArray()) {
+                switch (c) {
+                    case 'K' -> castling |= WHITE_OO;
+                    case 'Q' -> castling |= WHITE_OOO;
+                    case 'k' -> castling |= BLACK_OO;
+                    case 'q' -> castling |= BLACK_OOO;
+                    default -> {}
+                }
+            }
+        }
+
+        ep_square = fields.length > 3 && !fields[3].equals("-") ? parse_square(fields[3]) : -1;
+        // only keep an en passant square that can actually be captured on, same as make() does
+        if (ep_square >= 0 && (Attacks.PAWN[side ^ 1][ep_square] & pieces[code(side, PAWN)]) == 0) {
+            ep_square = -1;
+        }
+        halfmove_clock = fields.length > 4 ? Integer.parseInt(fields[4]) : 0;
+        fullmove_number = fields.length > 5 ? Integer.parseInt(fields[5]) : 1;
+        key = compute_key();
+        undo_size = 0;
+        history_size = 0;
+        plies_from_null = 0;
+    }
+
+    /*
+    Zobrist key built from scratch. make/unmake update the key incrementally; this is the reference they
+    are checked against when assertions are on (java -ea)
+     */
+    public long compute_key() {
+        long k = 0L;
+        long occ = occupied;
+        while (occ != 0) {
+            int square = Bitboards.lsb(occ);
+            occ &= occ - 1;
+            k ^= Zobrist.PIECES[squares[square]][square];
+        }
+        if (side == BLACK_SIDE) k ^= Zobrist.BLACK_TO_MOVE;
+        k ^= Zobrist.CASTLING[castling];
+        if (ep_square >= 0) k ^= Zobrist.EP_FILE[ep_square & 7];
+        return k;
+    }
+
+    public long key() {
+        return key;
+    }
+
+    public long pawn_key() {
+        return pawn_key;
+    }
+
+    public static int parse_square(String s) {
+        int file = s.charAt(0) - 'a';
+        int rank = s.charAt(1) - '1';
+        return (7 - rank) * 8 + file;
+    }
+
+    public static String square_name(int square) {
+        return "" + (char) ('a' + (square & 7)) + (char) ('8' - (square >>> 3));
+    }
+
+    void put(int code, int square) {
+        long b = 1L << square;
+        pieces[code] |= b;
+        occupancy[side_of(code)] |= b;
+        occupied |= b;
+        squares[square] = code;
+        middlegame += Evaluation.MIDDLEGAME[code][square];
+        endgame += Evaluation.ENDGAME[code][square];
+        phase += Evaluation.PHASE[code];
+        if (type_of(code) == PAWN) pawn_key ^= Zobrist.PIECES[code][square];
+    }
+
+    void remove(int square) {
+        int code = squares[square];
+        long b = ~(1L << square);
+        pieces[code] &= b;
+        occupancy[side_of(code)] &= b;
+        occupied &= b;
+        squares[square] = EMPTY;
+        middlegame -= Evaluation.MIDDLEGAME[code][square];
+        endgame -= Evaluation.ENDGAME[code][square];
+        phase -= Evaluation.PHASE[code];
+        if (type_of(code) == PAWN) pawn_key ^= Zobrist.PIECES[code][square];
+    }
+
+    public int piece_at(int square) {
+        return squares[square];
+    }
+
+    public long pieces(int side, int type) {
+        return pieces[code(side, type)];
+    }
+
+    public int side_to_move() {
+        return side;
+    }
+
+    // the side to move as a Piece.WHITE / Piece.BLACK color for the UI
+    public int color_to_move() {
+        return side == WHITE_SIDE ? Piece.WHITE : Piece.BLACK;
+    }
+
+    public int king_square(int side) {
+        return Bitboards.lsb(pieces[code(side, KING)]);
+    }
+
+    /*
+    Is the square attacked by any piece of the given side? Looks outward from the square with each
+    piece's attack table and intersects with that piece's bitboard
+     */
+    public boolean is_attacked(int square, int by_side) {
+        int base = by_side * 6;
+        if ((Attacks.PAWN[by_side ^ 1][square] & pieces[base + PAWN]) != 0) return true;
+        if ((Attacks.KNIGHT[square] & pieces[base + KNIGHT]) != 0) return true;
+        if ((Attacks.KING[square] & pieces[base + KING]) != 0) return true;
+        long queens = pieces[base + QUEEN];
+        if ((Attacks.rook(square, occupied) & (pieces[base + ROOK] | queens)) != 0) return true;
+        return (Attacks.bishop(square, occupied) & (pieces[base + BISHOP] | queens)) != 0;
+    }
+
+    /*
+    Every piece of either side attacking the square, given an occupancy (which may differ from the
+    board's, e.g. with pieces lifted off during an exchange)
+     */
+    public long attackers_to(int square, long occupied) {
+        return (Attacks.PAWN[BLACK_SIDE][square] & pieces[PAWN])
+             | (Attacks.PAWN[WHITE_SIDE][square] & pieces[6 + PAWN])
+             | (Attacks.KNIGHT[square] & (pieces[KNIGHT] | pieces[6 + KNIGHT]))
+             | (Attacks.KING[square] & (pieces[KING] | pieces[6 + KING]))
+             | (Attacks.rook(square, occupied) & (pieces[ROOK] | pieces[6 + ROOK] | pieces[QUEEN] | pieces[6 + QUEEN]))
+             | (Attacks.bishop(square, occupied) & (pieces[BISHOP] | pieces[6 + BISHOP] | pieces[QUEEN] | pieces[6 + QUEEN]));
+    }
+
+    public boolean king_attacked(int side) {
+        return is_attacked(king_square(side), side ^ 1);
+    }
+
+    public boolean in_check() {
+        return king_attacked(side);
+    }
+
+    /*
+    Plays the packed move on this position in place, pushing what unmake needs onto the undo stack
+     */
+    public void make(int move) {
+        int from = Move.from(move), to = Move.to(move);
+        int code = squares[from];
+        int captured_square = to;
+        if ((move & Move.EN_PASSANT) != 0) {
+            // the captured pawn sits behind the target square
+            captured_square = to - 8 * (side == WHITE_SIDE ? -1 : 1);
+        }
+        int captured = squares[captured_square];
+
+        if (undo_size == undo_moved.length) grow_undo_stack();
+        int i = undo_size++;
+        undo_moved[i] = code;
+        undo_captured[i] = captured;
+        undo_castling[i] = castling;
+        undo_ep[i] = ep_square;
+        undo_halfmove[i] = halfmove_clock;
+        undo_key[i] = key;
+        history[history_size++ & HISTORY_MASK] = key;
+        plies_from_null++;
+
+        long k = key;
+        halfmove_clock++;
+        if (captured != EMPTY) {
+            remove(captured_square);
+            k ^= Zobrist.PIECES[captured][captured_square];
+            halfmove_clock = 0;
+        }
+        remove(from);
+        int promotion = Move.promotion(move);
+        int placed = promotion != 0 ? code(side, promotion) : code;
+        put(placed, to);
+        k ^= Zobrist.PIECES[code][from] ^ Zobrist.PIECES[placed][to];
+        if (type_of(code) == PAWN) halfmove_clock = 0;
+
+        if (ep_square >= 0) k ^= Zobrist.EP_FILE[ep_square & 7];
+        ep_square = -1;
+        if ((move & Move.DOUBLE_PUSH) != 0) {
+            // only remember the square if an enemy pawn can take on it, so equal positions hash equally
+            int passed = (from + to) / 2;
+            if ((Attacks.PAWN[side][passed] & pieces[code(side ^ 1, PAWN)]) != 0) {
+                ep_square = passed;
+                k ^= Zobrist.EP_FILE[passed & 7];
+            }
+        }
+
+        if ((move & Move.CASTLE) != 0) {
+            int rook_from = to > from ? to + 1 : to - 2;
+            int rook_to = to > from ? to - 1 : to + 1;
+            int rook = squares[rook_from];
+            remove(rook_from);
+            put(rook, rook_to);
+            k ^= Zobrist.PIECES[rook][rook_from] ^ Zobrist.PIECES[rook][rook_to];
+        }
+
+        k ^= Zobrist.CASTLING[castling];
+        castling &= CASTLING_MASK[from] & CASTLING_MASK[to];
+        k ^= Zobrist.CASTLING[castling];
+
+        if (side == BLACK_SIDE) fullmove_number++;
+        side ^= 1;
+        key = k ^ Zobrist.BLACK_TO_MOVE;
+
+        assert key == compute_key() : "incremental key drifted after " + Move.to_string(move);
+    }
+
+    /*
+    Takes back the last move given to make(). Moves must be unmade in reverse order
+     */
+    public void unmake(int move) {
+        int from = Move.from(move), to = Move.to(move);
+        int i = --undo_size;
+        int code = undo_moved[i];
+        int captured = undo_captured[i];
+
+        side ^= 1;
+        if (side == BLACK_SIDE) fullmove_number--;
+        castling = undo_castling[i];
+        ep_square = undo_ep[i];
+        halfmove_clock = undo_halfmove[i];
+        key = undo_key[i];
+        history_size--;
+        plies_from_null--;
+
+        if ((move & Move.CASTLE) != 0) {
+            int rook_from = to > from ? to + 1 : to - 2;
+            int rook_to = to > from ? to - 1 : to + 1;
+            int rook = squares[rook_to];
+            remove(rook_to);
+            put(rook, rook_from);
+        }
+
+        remove(to);
+        put(code, from);
+        if (captured != EMPTY) {
+            if ((move & Move.EN_PASSANT) != 0) {
+                put(captured, to - 8 * (side == WHITE_SIDE ? -1 : 1));
+            } else {
+                put(captured, to);
+            }
+        }
+
+        assert key == compute_key() : "incremental key drifted undoing " + Move.to_string(move);
+    }
+
+    /*
+    Passes the turn without moving, for null-move pruning. Never legal in check
+     */
+    public void make_null() {
+        if (undo_size == undo_moved.length) grow_undo_stack();
+        int i = undo_size++;
+        undo_ep[i] = ep_square;
+        undo_halfmove[i] = halfmove_clock;
+        undo_key[i] = key;
+        undo_plies_from_null[i] = plies_from_null;
+        history[history_size++ & HISTORY_MASK] = key;
+        plies_from_null = 0;
+
+        if (ep_square >= 0) key ^= Zobrist.EP_FILE[ep_square & 7];
+        ep_square = -1;
+        halfmove_clock++;
+        side ^= 1;
+        key ^= Zobrist.BLACK_TO_MOVE;
+
+        assert key == compute_key() : "incremental key drifted after a null move";
+    }
+
+    public void unmake_null() {
+        int i = --undo_size;
+        side ^= 1;
+        ep_square = undo_ep[i];
+        halfmove_clock = undo_halfmove[i];
+        key = undo_key[i];
+        history_size--;
+        plies_from_null = undo_plies_from_null[i];
+    }
+
+    /*
+    Has this position been seen before? Only positions with the same side to move since the last capture,
+    pawn move or null move can be equal to it, so at most halfmove_clock / 2 keys are compared. One earlier
+    occurrence is enough: the side that could repeat once can repeat again
+     */
+    public boolean is_repetition() {
+        int back = Math.min(Math.min(halfmove_clock, plies_from_null), Math.min(history_size, HISTORY_SIZE));
+        for (int i = 4; i <= back; i += 2) {
+            if (history[(history_size - i) & HISTORY_MASK] == key) return true;
+        }
+        return false;
+    }
+
+    // fifty moves by each side without a capture or a pawn move
+    public boolean is_fifty_move_draw() {
+        return halfmove_clock >= 100;
+    }
+
+    // anything besides king and pawns; without it, passing can be better than every move (zugzwang)
+    public boolean has_non_pawn_material(int side) {
+        return (occupancy[side] & ~pieces[code(side, PAWN)] & ~pieces[code(side, KING)]) != 0;
+    }
+
+    // only reached when a game outgrows the preallocated stack; searches never get here
+    private void grow_undo_stack() {
+        int capacity = undo_moved.length * 2;
+        undo_moved = java.util.Arrays.copyOf(undo_moved, capacity);
+        undo_captured = java.util.Arrays.copyOf(undo_captured, capacity);
+        undo_castling = java.util.Arrays.copyOf(undo_castling, capacity);
+        undo_ep = java.util.Arrays.copyOf(undo_ep, capacity);
+        undo_halfmove = java.util.Arrays.copyOf(undo_halfmove, capacity);
+        undo_key = java.util.Arrays.copyOf(undo_key, capacity);
+        undo_plies_from_null = java.util.Arrays.copyOf(undo_plies_from_null, capacity);
+    }
+
+    /*
+    Derived Piece[][] view of the position for the Swing rendering
+     */
+    public Piece[][] to_grid() {
+        Piece[][] grid = new Piece[8][8];
+        long occ = occupied;
+        while (occ != 0) {
+            int square = Bitboards.lsb(occ);
+            occ &= occ - 1;
+            int code = squares[square];
+            grid[square >>> 3][square & 7] = new Piece(
+                    square >>> 3, square & 7, PIECE_CHARS.charAt(code),
+                    side_of(code) == WHITE_SIDE ? Piece.WHITE : Piece.BLACK
+            );
+        }
+        return grid;
+    }
+}
@@ -0,0 +1,449 @@
+/*
+Negamax alpha-beta search with iterative deepening. Each iteration searches one ply deeper than the
+last and starts from the previous best move (through the transposition table), so a usable move is
+ready whenever the search is stopped. From depth 5 on, iterations start with a narrow aspiration window
+around the previous score and widen it on a fail. Inside the tree, principal variation search gives
+every move after the first a null window and only re-searches the ones that beat it. Moves come from a
+MovePicker, best first, so most cutoffs happen on the first move or two.
+
+Away from the principal variation the tree is searched selectively (each part can be switched off in
+SearchOptions, and SearchStats counts how often it fires):
+    reverse futility    near the leaves, return when the static eval is far enough above beta
+    razoring            near the leaves, drop to quiescence when the eval is far below alpha
+    null move           pass; if a reduced search still fails high, so would a real move
+    futility            near the leaves, skip quiet moves that can't bring a hopeless eval to alpha
+    late move reductions  quiet moves late in the order are searched shallower, less so when their
+                        history is good, and searched again at full depth if they beat alpha
+Positions in check are searched one ply deeper. A position repeated since the last irreversible move, or
+one where the fifty-move rule applies, is a draw.
+
+At depth 0 a quiescence search takes over and plays out captures and queen promotions until the
+position is quiet, so the static evaluation is never taken in the middle of an exchange. Captures
+that lose material by static exchange evaluation (See) are skipped, as are captures that couldn't
+lift the score to alpha even if the piece came for free (delta pruning).
+
+A Search owns its position, move buffers and history tables and allocates nothing while it runs. Several Searches can
+share one transposition table, each on its own thread (see LazySmp).
+ */
+public class Search {
+    public static final int INFINITY = 32001;
+    public static final int MATE = 32000;
+    // scores beyond this are mates in some number of plies
+    public static final int MATE_BOUND = MATE - MoveBuffer.MAX_PLY;
+
+    private static final int ASPIRATION_DEPTH = 5;
+    private static final int ASPIRATION_WINDOW = 25;
+    private static final int CHECK_EVERY = 2047; // nodes between looks at the clock
+    private static final int DELTA_MARGIN = 200;
+    private static final int PAWN_TABLE_ENTRIES = 1 << 14;
+    private static final int EVAL_CACHE_MB = 4; // for a Search that isn't given a shared cache
+    private static final int REVERSE_FUTILITY_DEPTH = 6, REVERSE_FUTILITY_MARGIN = 80; // margin per ply
+    private static final int RAZOR_DEPTH = 2, RAZOR_MARGIN = 300;
+    private static final int NULL_MOVE_DEPTH = 3;
+    private static final int[] FUTILITY_MARGIN = {0, 150, 300, 450}; // by depth
+    private static final int LMR_DEPTH = 3, LMR_MOVES = 3, LMR_HISTORY_DIVISOR = 8192;
+
+    // late move reduction by depth and number of moves already searched
+    private static final int[][] LMR = new int[64][64];
+    static {
+        for (int depth = 1; depth < 64; depth++) {
+            for (int moves = 1; moves < 64; moves++) {
+                LMR[depth][moves] = (int) (0.75 + Math.log(depth) * Math.log(moves) / 2.25);
+            }
+        }
+    }
+
+    private Position pos;
+    private final TranspositionTable tt;
+    private final SearchOptions options;
+    final SearchStats stats = new SearchStats();
+    private final MoveBuffer buffer = new MoveBuffer();
+    private final History history = new History();
+    private final PawnTable pawns = new PawnTable(PAWN_TABLE_ENTRIES);
+    private final EvalCache eval_cache;
+    private final MovePicker[] pickers = new MovePicker[MoveBuffer.MAX_PLY];
+    private final int[] played = new int[MoveBuffer.MAX_PLY]; // the move made at each ply, for counter-moves
+    private final int[][] quiets_tried = new int[MoveBuffer.MAX_PLY][MoveBuffer.MAX_MOVES];
+    private final int[][] pv = new int[MoveBuffer.MAX_PLY][MoveBuffer.MAX_PLY];
+    private final int[] pv_length = new int[MoveBuffer.MAX_PLY];
+
+    private long nodes;
+    // nodes as other threads may read them, published every CHECK_EVERY nodes and after each iteration
+    private volatile long published_nodes;
+    private long node_limit;
+    private long deadline; // System.nanoTime() to stop at, 0 if none
+    private long root_best_nodes; // nodes spent under the best root move in the current iteration
+    private volatile boolean stop;
+
+    // called on the searching thread after each completed iteration, e.g. to print UCI info lines
+    java.util.function.Consumer<SearchResult> on_iteration;
+
+    public Search(Position pos, TranspositionTable tt) {
+        this(pos, tt, new SearchOptions(), new EvalCache(EVAL_CACHE_MB));
+    }
+
+    public Search(Position pos, TranspositionTable tt, SearchOptions options, EvalCache eval_cache) {
+        this.pos = pos;
+        this.tt = tt;
+        this.options = options;
+        this.eval_cache = eval_cache;
+        for (int ply = 0; ply < MoveBuffer.MAX_PLY; ply++) pickers[ply] = new MovePicker(buffer.moves(ply));
+    }
+
+    /*
+    Gives the search a new position and clears a previous stop. Done before the search is handed to its
+    thread, so a stop() that arrives before think() starts still counts
+     */
+    public void set_position(Position pos) {
+        this.pos = pos;
+        stop = false;
+        // here rather than in think(), so nodes() of a helper that hasn't started yet is 0, not the last search's count
+        nodes = 0;
+        published_nodes = 0;
+    }
+
+    // may be called from any thread; the search returns its best move so far
+    public void stop() {
+        stop = true;
+    }
+
+    // may be called from any thread while the search runs
+    public long nodes() {
+        return published_nodes;
+    }
+
+    public SearchResult think(SearchLimits limits) {
+        return think(limits, 1);
+    }
+
+    /*
+    Iterative deepening from start_depth. Lazy SMP helpers start at different depths so the threads
+    spread over the tree instead of all searching the same nodes in the same order
+     */
+    public SearchResult think(SearchLimits limits, int start_depth) {
+        long start = System.nanoTime();
+        nodes = 0;
+        published_nodes = 0;
+        node_limit = limits.nodes;
+        deadline = limits.movetime_ms > 0 ? start + limits.movetime_ms * 1_000_000L : 0;
+        if (limits.clock != null) {
+            long hard = start + limits.clock.hard_ms * 1_000_000L;
+            deadline = deadline == 0 ? hard : Math.min(deadline, hard);
+        }
+        int root_moves = limits.clock != null ? MoveGen.legal_moves(pos, buffer.moves(0), 0) : 0;
+        history.age();
+        stats.clear();
+        pawns.reset_counters();
+
+        SearchResult result = new SearchResult();
+        int score = 0;
+        for (int depth = start_depth; depth <= limits.depth; depth++) {
+            long iteration_start = nodes;
+            score = aspiration(depth, score);
+            // an interrupted iteration is thrown away; the last complete one stands
+            if (stop) break;
+
+            result.best_move = pv_length[0] > 0 ? pv[0][0] : Move.NONE;
+            result.score = score;
+            result.depth = depth;
+            result.pv = java.util.Arrays.copyOf(pv[0], pv_length[0]);
+            result.nodes = nodes;
+            result.time_ms = (System.nanoTime() - start) / 1_000_000;
+            published_nodes = nodes;
+            if (on_iteration != null) on_iteration.accept(result);
+
+            // no legal moves, or a forced mate found: deeper iterations can't change anything
+            if (result.best_move == Move.NONE || Math.abs(score) >= MATE_BOUND) break;
+            if (limits.clock != null) {
+                int best_share = (int) (root_best_nodes * 100 / Math.max(1, nodes - iteration_start));
+                if (limits.clock.should_stop(result, best_share, root_moves, result.time_ms)) break;
+            }
+        }
+
+        if (result.best_move == Move.NONE) {
+            // stopped before even depth 1 finished: any legal move beats none
+            int count = MoveGen.legal_moves(pos, buffer.moves(0), 0);
+            if (count > 0) {
+                result.best_move = buffer.moves(0)[0];
+                result.pv = new int[]{result.best_move};
+            }
+        }
+        result.nodes = nodes;
+        result.time_ms = (System.nanoTime() - start) / 1_000_000;
+        published_nodes = nodes;
+        stats.pawn_hits = pawns.hits();
+        stats.pawn_probes = pawns.probes();
+        result.stats.add(stats);
+        return result;
+    }
+
+    private int aspiration(int depth, int previous) {
+        if (depth < ASPIRATION_DEPTH) return negamax(depth, -INFINITY, INFINITY, 0);
+
+        int window = ASPIRATION_WINDOW;
+        int alpha = Math.max(previous - window, -INFINITY);
+        int beta = Math.min(previous + window, INFINITY);
+        while (true) {
+            int score = negamax(depth, alpha, beta, 0);
+            if (stop) return score;
+            if (score <= alpha) {
+                alpha = Math.max(score - window, -INFINITY);
+            } else if (score >= beta) {
+                beta = Math.min(score + window, INFINITY);
+            } else {
+                return score;
+            }
+            window *= 2;
+        }
+    }
+
+    private void check_limits() {
+        published_nodes = nodes;
+        if (nodes >= node_limit) stop = true;
+        if (deadline != 0 && System.nanoTime() >= deadline) stop = true;
+    }
+
+    private int negamax(int depth, int alpha, int beta, int ply) {
+        pv_length[ply] = 0;
+        if ((++nodes & CHECK_EVERY) == 0) check_limits();
+        if (stop) return 0;
+        if (ply > 0 && pos.is_repetition()) return 0;
+        if (ply > 0 && pos.is_fifty_move_draw()) {
+            // checkmate on the hundredth halfmove still wins; only a side that isn't mated can claim the draw
+            if (!pos.in_check() || MoveGen.legal_moves(pos, buffer.moves(ply), 0) > 0) return 0;
+            return -MATE + ply;
+        }
+
+        boolean pv_node = beta - alpha > 1;
+        boolean in_check = pos.in_check();
+        if (in_check && options.check_extensions) {
+            depth++;
+            stats.check_extensions++;
+        }
+
+        if (depth <= 0) return quiesce(alpha, beta, ply);
+        if (ply >= MoveBuffer.MAX_PLY - 1) return evaluate();
+
+        int tt_move = Move.NONE;
+        long entry = tt.probe(pos.key());
+        if (entry != 0) {
+            tt_move = TranspositionTable.move(entry);
+            if (!pv_node && TranspositionTable.depth(entry) >= depth) {
+                int tt_score = score_from_tt(TranspositionTable.score(entry), ply);
+                int bound = TranspositionTable.bound(entry);
+                if (bound == TranspositionTable.EXACT
+                        || (bound == TranspositionTable.LOWER && tt_score >= beta)
+                        || (bound == TranspositionTable.UPPER && tt_score <= alpha)) {
+                    return tt_score;
+                }
+            }
+        }
+
+        int eval = 0;
+        if (!pv_node && !in_check) {
+            eval = evaluate();
+
+            if (options.reverse_futility && depth <= REVERSE_FUTILITY_DEPTH && Math.abs(beta) < MATE_BOUND
+                    && eval - REVERSE_FUTILITY_MARGIN * depth >= beta) {
+                stats.reverse_futility_cutoffs++;
+                return eval;
+            }
+
+            if (options.razoring && depth <= RAZOR_DEPTH && eval + RAZOR_MARGIN * depth <= alpha) {
+                int score = quiesce(alpha, alpha + 1, ply);
+                if (stop) return 0;
+                if (score <= alpha) {
+                    stats.razor_cutoffs++;
+                    return score;
+                }
+            }
+
+            // never twice in a row, and not with only pawns left, where passing may really be best (zugzwang)
+            if (options.null_move && depth >= NULL_MOVE_DEPTH && eval >= beta
+                    && ply > 0 && played[ply - 1] != Move.NONE && pos.has_non_pawn_material(pos.side_to_move())) {
+                int reduction = 3 + depth / 4 + Math.min(3, (eval - beta) / 200);
+                stats.null_move_tries++;
+                played[ply] = Move.NONE;
+                pos.make_null();
+                int score = -negamax(depth - 1 - reduction, -beta, -beta + 1, ply + 1);
+                pos.unmake_null();
+                if (stop) return 0;
+                if (score >= beta) {
+                    stats.null_move_cutoffs++;
+                    // a mate found after passing isn't a mate that can be claimed
+                    return score >= MATE_BOUND ? beta : score;
+                }
+            }
+        }
+        boolean futile = options.futility && !pv_node && !in_check && depth < FUTILITY_MARGIN.length
+                && eval + FUTILITY_MARGIN[depth] <= alpha;
+
+        MovePicker picker = pickers[ply];
+        picker.init(pos, history, tt_move, ply, ply > 0 ? played[ply - 1] : Move.NONE);
+        int[] quiets = quiets_tried[ply];
+        int quiet_count = 0;
+
+        int best_score = -INFINITY;
+        int best_move = Move.NONE;
+        int original_alpha = alpha;
+        int searched = 0;
+        int move;
+        while ((move = picker.next()) != Move.NONE) {
+            boolean quiet = MoveGen.is_quiet(move);
+            int move_history = quiet ? history.score(pos.side_to_move(), move) : 0;
+            long nodes_before = nodes;
+            played[ply] = move;
+            pos.make(move);
+            boolean gives_check = pos.in_check();
+
+            if (futile && quiet && !gives_check && searched > 0) {
+                pos.unmake(move);
+                stats.futility_prunes++;
+                continue;
+            }
+
+            int new_depth = depth - 1;
+            int score;
+            if (searched == 0) {
+                score = -negamax(new_depth, -beta, -alpha, ply + 1);
+            } else {
+                int reduction = 0;
+                if (options.late_move_reductions && quiet && !in_check && !gives_check
+                        && depth >= LMR_DEPTH && searched >= LMR_MOVES) {
+                    reduction = LMR[Math.min(depth, 63)][Math.min(searched, 63)];
+                    if (pv_node) reduction--;
+                    reduction -= move_history / LMR_HISTORY_DIVISOR;
+                    reduction = Math.max(0, Math.min(reduction, new_depth - 1));
+                }
+
+                if (reduction > 0) {
+                    stats.reductions++;
+                    score = -negamax(new_depth - reduction, -alpha - 1, -alpha, ply + 1);
+                    if (score > alpha) {
+                        stats.reduction_researches++;
+                        score = -negamax(new_depth, -alpha - 1, -alpha, ply + 1);
+                    }
+                } else {
+                    score = -negamax(new_depth, -alpha - 1, -alpha, ply + 1);
+                }
+                if (score > alpha && score < beta) {
+                    score = -negamax(new_depth, -beta, -alpha, ply + 1);
+                }
+            }
+            pos.unmake(move);
+            searched++;
+
+            if (stop) return 0;
+
+            if (score > best_score) {
+                best_score = score;
+                best_move = move;
+                if (ply == 0) root_best_nodes = nodes - nodes_before;
+                if (score > alpha) {
+                    alpha = score;
+                    update_pv(ply, move);
+                    if (alpha >= beta) {
+                        if (quiet) {
+                            history.update(pos, ply, ply > 0 ? played[ply - 1] : Move.NONE, move, depth, quiets, quiet_count);
+                        }
+                        break;
+                    }
+                }
+            }
+            if (quiet) quiets[quiet_count++] = move;
+        }
+
+        if (searched == 0) {
+            return in_check ? -MATE + ply : 0;
+        }
+
+        int bound = best_score >= beta ? TranspositionTable.LOWER
+                : best_score > original_alpha ? TranspositionTable.EXACT : TranspositionTable.UPPER;
+        tt.store(pos.key(), best_move, score_to_tt(best_score, ply), depth, bound);
+        return best_score;
+    }
+
+    /*
+    Searches only captures and queen promotions until the position is quiet. The side to move may
+    "stand pat" on the static evaluation instead of capturing, unless it is in check
+     */
+    private int quiesce(int alpha, int beta, int ply) {
+        pv_length[ply] = 0;
+        if ((++nodes & CHECK_EVERY) == 0) check_limits();
+        if (stop) return 0;
+        if (ply >= MoveBuffer.MAX_PLY - 1) return evaluate();
+
+        boolean evasions = options.qsearch_check_evasions && pos.in_check();
+        MovePicker picker = pickers[ply];
+        int best_score;
+        int stand_pat = 0;
+        if (evasions) {
+            // every reply, ordered like in the main search
+            picker.init(pos, history, Move.NONE, ply, Move.NONE);
+            best_score = -INFINITY;
+        } else {
+            stand_pat = evaluate();
+            if (stand_pat >= beta) return stand_pat;
+            if (stand_pat > alpha) alpha = stand_pat;
+            best_score = stand_pat;
+            picker.init_quiescence(pos);
+        }
+
+        int move;
+        while ((move = picker.next()) != Move.NONE) {
+            if (!evasions) {
+                if (options.delta_pruning && Move.promotion(move) == 0
+                        && stand_pat + See.value(See.captured(pos, move)) + DELTA_MARGIN <= alpha) {
+                    continue;
+                }
+                if (options.see_pruning && !See.see_ge(pos, move, 0)) continue;
+            }
+
+            pos.make(move);
+            int score = -quiesce(-beta, -alpha, ply + 1);
+            pos.unmake(move);
+            if (stop) return 0;
+
+            if (score > best_score) {
+                best_score = score;
+                if (score > alpha) {
+                    alpha = score;
+                    update_pv(ply, move);
+                    if (alpha >= beta) break;
+                }
+            }
+        }
+        // in check with no move to get out of it
+        if (evasions && best_score == -INFINITY) return -MATE + ply;
+        return best_score;
+    }
+
+    // static evaluation, through the cache shared with the other threads
+    private int evaluate() {
+        long key = pos.key();
+        long data = eval_cache.probe(key);
+        if (data != 0) return EvalCache.score(data);
+        int score = Evaluation.evaluate(pos, pawns);
+        eval_cache.store(key, score);
+        return score;
+    }
+
+    private void update_pv(int ply, int move) {
+        pv[ply][0] = move;
+        System.arraycopy(pv[ply + 1], 0, pv[ply], 1, pv_length[ply + 1]);
+        pv_length[ply] = pv_length[ply + 1] + 1;
+    }
+
+    // mate scores are stored relative to the node, not the root, so they stay right in other positions
+    private static int score_to_tt(int score, int ply) {
+        if (score >= MATE_BOUND) return score + ply;
+        if (score <= -MATE_BOUND) return score - ply;
+        return score;
+    }
+
+    private static int score_from_tt(int score, int ply) {
+        if (score >= MATE_BOUND) return score - ply;
+        if (score <= -MATE_BOUND) return score + ply;
+        return score;
+    }
+}
@@ -0,0 +1,28 @@
+/*
+When a search should stop. Any limit left at its default is ignored; a search with no limits at all
+runs until it is stopped from outside
+ */
+public class SearchLimits {
+    int depth = MoveBuffer.MAX_PLY - 1;
+    long nodes = Long.MAX_VALUE;
+    long movetime_ms = 0; // 0 means no time limit
+    TimeManager clock; // playing on a clock: the search stops by its limits; null if not
+
+    public static SearchLimits depth(int depth) {
+        SearchLimits limits = new SearchLimits();
+        limits.depth = depth;
+        return limits;
+    }
+
+    public static SearchLimits movetime(long ms) {
+        SearchLimits limits = new SearchLimits();
+        limits.movetime_ms = ms;
+        return limits;
+    }
+
+    public static SearchLimits clock(long time_ms, long increment_ms, int moves_to_go) {
+        SearchLimits limits = new SearchLimits();
+        limits.clock = new TimeManager(time_ms, increment_ms, moves_to_go);
+        return limits;
+    }
+}
@@ -0,0 +1,57 @@
+/*
+Switches for the optional parts of the search, so each one can be turned off and measured on its own
+(see SearchStats for how often each one fires). One set is shared by all the threads of a LazySmp
+ */
+public class SearchOptions {
+    // quiescence search
+    boolean qsearch_check_evasions = true; // search every reply when in check instead of standing pat
+    boolean delta_pruning = true;
+    boolean see_pruning = true;            // skip captures that lose material on the exchange
+
+    // selective search in the main tree
+    boolean null_move = true;
+    boolean late_move_reductions = true;
+    boolean reverse_futility = true;
+    boolean futility = true;
+    boolean razoring = true;
+    boolean check_extensions = true;
+
+    public static final String[] NAMES = {
+            "qsearch_check_evasions", "delta_pruning", "see_pruning", "null_move", "late_move_reductions",
+            "reverse_futility", "futility", "razoring", "check_extensions",
+    };
+
+    public boolean get(String name) {
+        switch (name) {
+            case "qsearch_check_evasions": return qsearch_check_evasions;
+            case "delta_pruning": return delta_pruning;
+            case "see_pruning": return see_pruning;
+            case "null_move": return null_move;
+            case "late_move_reductions": return late_move_reductions;
+            case "reverse_futility": return reverse_futility;
+            case "futility": return futility;
+            case "razoring": return razoring;
+            case "check_extensions": return check_extensions;
+            default: throw new IllegalArgumentException("no search option " + name);
+        }
+    }
+
+    /*
+    Sets an option by name. Returns false if there is no option with that name
+     */
+    public boolean set(String name, boolean value) {
+        switch (name) {
+            case "qsearch_check_evasions": qsearch_check_evasions = value; break;
+            case "delta_pruning": delta_pruning = value; break;
+            case "see_pruning": see_pruning = value; break;
+            case "null_move": null_move = value; break;
+            case "late_move_reductions": late_move_reductions = value; break;
+            case "reverse_futility": reverse_futility = value; break;
+            case "futility": futility = value; break;
+            case "razoring": razoring = value; break;
+            case "check_extensions": check_extensions = value; break;
+            default: return false;
+        }
+        return true;
+    }
+}
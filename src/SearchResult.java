@@ -0,0 +1,38 @@
+/*
+Outcome of a search (or of one iteration of it). The score is in centipawns from the point of view of
+the side to move at the root
+ */
+public class SearchResult {
+    int best_move = Move.NONE;
+    int score;
+    int depth;
+    long nodes;
+    long time_ms;
+    int[] pv = new int[0];
+    SearchStats stats = new SearchStats();
+
+    public SearchResult copy() {
+        SearchResult copy = new SearchResult();
+        copy.best_move = best_move;
+        copy.score = score;
+        copy.depth = depth;
+        copy.nodes = nodes;
+        copy.time_ms = time_ms;
+        copy.pv = pv;
+        copy.stats = stats;
+        return copy;
+    }
+
+    public boolean is_mate_score() {
+        return Math.abs(score) >= Search.MATE_BOUND;
+    }
+
+    public String pv_string() {
+        StringBuilder sb = new StringBuilder();
+        for (int move : pv) {
+            if (sb.length() > 0) sb.append(' ');
+            sb.append(Move.to_string(move));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,47 @@
+/*
+How often each selective-search feature fired during a search, next to the node count, so the effect
+of switching one off in SearchOptions can be measured. Also the pawn structure cache's hit rate
+ */
+public class SearchStats {
+    long null_move_tries;
+    long null_move_cutoffs;
+    long reductions;           // late moves searched at reduced depth
+    long reduction_researches; // reduced moves that beat alpha and were searched again at full depth
+    long reverse_futility_cutoffs;
+    long futility_prunes;
+    long razor_cutoffs;
+    long check_extensions;
+    long pawn_hits, pawn_probes; // pawn structure cache
+
+    public void clear() {
+        null_move_tries = null_move_cutoffs = 0;
+        reductions = reduction_researches = 0;
+        reverse_futility_cutoffs = futility_prunes = razor_cutoffs = 0;
+        check_extensions = 0;
+        pawn_hits = pawn_probes = 0;
+    }
+
+    public void add(SearchStats other) {
+        null_move_tries += other.null_move_tries;
+        null_move_cutoffs += other.null_move_cutoffs;
+        reductions += other.reductions;
+        reduction_researches += other.reduction_researches;
+        reverse_futility_cutoffs += other.reverse_futility_cutoffs;
+        futility_prunes += other.futility_prunes;
+        razor_cutoffs += other.razor_cutoffs;
+        check_extensions += other.check_extensions;
+        pawn_hits += other.pawn_hits;
+        pawn_probes += other.pawn_probes;
+    }
+
+    @Override
+    public String toString() {
+        return "null move " + null_move_cutoffs + "/" + null_move_tries
+                + "  lmr " + reductions + " (" + reduction_researches + " re-searched)"
+                + "  rfp " + reverse_futility_cutoffs
+                + "  futility " + futility_prunes
+                + "  razor " + razor_cutoffs
+                + "  check ext " + check_extensions
+                + "  pawn hits " + pawn_hits * 100 / Math.max(1, pawn_probes) + "%";
+    }
+}
@@ -0,0 +1,86 @@
+/*
+Static exchange evaluation: plays out the captures on one square, cheapest attacker first, using only
+the attack sets. Sliders hidden behind a piece join in once that piece is lifted off the occupancy,
+so batteries are counted. Nothing is made on the board, so it is far cheaper than searching the
+exchange.
+ */
+public final class See {
+    // exchange values; the king only needs to be worth more than anything it could win
+    private static final int[] VALUES = {100, 300, 300, 500, 900, 20000};
+
+    private See() {}
+
+    public static int value(int type) {
+        return VALUES[type];
+    }
+
+    // type of the piece the move takes, -1 if it takes nothing
+    public static int captured(Position pos, int move) {
+        if ((move & Move.EN_PASSANT) != 0) return Position.PAWN;
+        int code = pos.squares[Move.to(move)];
+        return code == Position.EMPTY ? -1 : Position.type_of(code);
+    }
+
+    /*
+    Does the move win at least threshold centipawns once every recapture on its square has been
+    played out? Either side may stop capturing whenever continuing would lose material
+     */
+    public static boolean see_ge(Position pos, int move, int threshold) {
+        // castling can't lose material, and promotions are rare enough to just search
+        if ((move & Move.CASTLE) != 0 || Move.promotion(move) != 0) return 0 >= threshold;
+
+        int from = Move.from(move), to = Move.to(move);
+        int victim = captured(pos, move);
+
+        int swap = (victim < 0 ? 0 : VALUES[victim]) - threshold;
+        if (swap < 0) return false;
+
+        swap = VALUES[Position.type_of(pos.squares[from])] - swap;
+        if (swap <= 0) return true;
+
+        long occupied = pos.occupied ^ (1L << from) ^ (1L << to);
+        if ((move & Move.EN_PASSANT) != 0) {
+            occupied ^= 1L << (to - 8 * (pos.side_to_move() == Position.WHITE_SIDE ? -1 : 1));
+        }
+        long attackers = pos.attackers_to(to, occupied);
+        long diagonal = pos.pieces[Position.BISHOP] | pos.pieces[6 + Position.BISHOP]
+                | pos.pieces[Position.QUEEN] | pos.pieces[6 + Position.QUEEN];
+        long straight = pos.pieces[Position.ROOK] | pos.pieces[6 + Position.ROOK]
+                | pos.pieces[Position.QUEEN] | pos.pieces[6 + Position.QUEEN];
+
+        int side = pos.side_to_move();
+        int result = 1;
+        while (true) {
+            side ^= 1;
+            attackers &= occupied;
+            long own = attackers & pos.occupancy[side];
+            if (own == 0) break;
+            result ^= 1;
+
+            // cheapest attacker of the side to recapture
+            int type = Position.PAWN;
+            long bb = 0L;
+            for (; type <= Position.KING; type++) {
+                bb = own & pos.pieces[Position.code(side, type)];
+                if (bb != 0) break;
+            }
+
+            if (type == Position.KING) {
+                // the king may only take if nothing can take it back
+                return (attackers & pos.occupancy[side ^ 1]) != 0 ? (result ^ 1) == 1 : result == 1;
+            }
+
+            swap = VALUES[type] - swap;
+            if (swap < result) break;
+
+            occupied ^= bb & -bb;
+            if (type == Position.PAWN || type == Position.BISHOP || type == Position.QUEEN) {
+                attackers |= Attacks.bishop(to, occupied) & diagonal;
+            }
+            if (type == Position.ROOK || type == Position.QUEEN) {
+                attackers |= Attacks.rook(to, occupied) & straight;
+            }
+        }
+        return result == 1;
+    }
+}
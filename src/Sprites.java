@@ -0,0 +1,61 @@
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+
+/*
+Piece images. The twelve files are read from the classpath (materials/white, materials/black) once, when
+the class is loaded, and scaled once to the size they are drawn at. Painting then only copies ready
+images, whatever the number of repaints. The scaled copies are compatible images, in the screen's own
+format, so Swing can keep them in video memory; unlike volatile images they are never lost.
+ */
+public final class Sprites {
+    private static final BufferedImage[] SOURCES = new BufferedImage[12]; // by piece code
+    private static final Image[] scaled = new Image[12];
+    private static int scaled_size = -1;
+
+    static {
+        for (int code = 0; code < 12; code++) {
+            char c = Position.PIECE_CHARS.charAt(code);
+            String path = String.format("materials/%s/%c.png", Position.side_of(code) == Position.WHITE_SIDE ? "white" : "black", c);
+            try (InputStream in = Sprites.class.getResourceAsStream(path)) {
+                if (in == null) throw new IOException("missing resource " + path);
+                SOURCES[code] = ImageIO.read(in);
+            } catch (IOException e) {
+                throw new ExceptionInInitializerError(e);
+            }
+        }
+    }
+
+    private Sprites() {}
+
+    // forces the images to be read, so it happens at startup instead of on the first paint
+    public static void load() {}
+
+    /*
+    Image of the piece with the given FEN letter, size pixels square. Changing the size rescales all twelve
+    at once; asking for the same size again costs nothing
+     */
+    public static Image get(char id, int size) {
+        if (size != scaled_size) scale(size);
+        return scaled[Position.PIECE_CHARS.indexOf(id)];
+    }
+
+    private static void scale(int size) {
+        GraphicsConfiguration config = GraphicsEnvironment.isHeadless() ? null
+                : GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice().getDefaultConfiguration();
+        for (int code = 0; code < 12; code++) {
+            BufferedImage image = config != null
+                    ? config.createCompatibleImage(size, size, Transparency.TRANSLUCENT)
+                    : new BufferedImage(size, size, BufferedImage.TYPE_INT_ARGB);
+            Graphics2D g = image.createGraphics();
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g.drawImage(SOURCES[code], 0, 0, size, size, null);
+            g.dispose();
+            scaled[code] = image;
+        }
+        scaled_size = size;
+    }
+}
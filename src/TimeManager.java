@@ -0,0 +1,72 @@
+/*
+Turns a clock into limits for iterative deepening. The hard limit is a deadline the search checks while
+it runs and never passes. The soft limit is only looked at between iterations: once it is used up no new
+iteration is started, since one that can't finish is wasted. The soft limit is scaled as the search goes:
+    unstable best move  the best move changed in the last iterations: think longer
+    score drop          the score fell since the last iteration: think longer, something went wrong
+    dominant move       one move took nearly all the effort for several iterations: stop early
+A position with a single legal reply is answered after the first iteration.
+ */
+public class TimeManager {
+    // time a move may take to reach the clock beyond what the search measured; kept in hand for every move
+    // still to be played, so a move never has to arrive after the flag falls
+    public static final long MOVE_OVERHEAD_MS = 20;
+    // sudden death: plan as if this many moves were still to be played
+    private static final int DEFAULT_MOVES_TO_GO = 30;
+    private static final int MAX_HARD_FACTOR = 4; // hard limit in soft limits
+    private static final int SCORE_DROP = 30; // centipawns
+    private static final int STABLE_ITERATIONS = 4, DOMINANT_PERCENT = 85;
+
+    final long soft_ms, hard_ms;
+
+    private int previous_move = Move.NONE;
+    private int previous_score;
+    private int stable; // iterations in a row with the same best move
+    private double instability; // decays, so only recent changes count
+
+    /*
+    time_ms is what is left on the clock, increment_ms what each move adds, moves_to_go the moves until
+    the next time control (0 for sudden death)
+     */
+    public TimeManager(long time_ms, long increment_ms, int moves_to_go) {
+        int moves = moves_to_go > 0 ? Math.min(moves_to_go, DEFAULT_MOVES_TO_GO) : DEFAULT_MOVES_TO_GO;
+        // everything this and the coming moves can use: the clock plus their increments, less their overheads
+        long available = Math.max(1, time_ms + increment_ms * (moves - 1) - MOVE_OVERHEAD_MS * (moves + 2));
+        long base = available / moves;
+        // never bet more than most of what is on the clock on a single move
+        long cap = Math.max(1, (time_ms - MOVE_OVERHEAD_MS) * 8 / 10);
+        soft_ms = Math.max(1, Math.min(base, cap));
+        hard_ms = Math.max(soft_ms, Math.min(base * MAX_HARD_FACTOR, cap));
+    }
+
+    /*
+    Called after every completed iteration. best_share is the percentage of the iteration's nodes spent
+    under the best move, legal_moves the number of legal moves at the root
+     */
+    public boolean should_stop(SearchResult result, int best_share, int legal_moves, long elapsed_ms) {
+        if (legal_moves <= 1) return true;
+
+        double scale = 1.0;
+        if (previous_move != Move.NONE) {
+            instability *= 0.5;
+            if (result.best_move != previous_move) {
+                instability += 1.0;
+                stable = 0;
+            } else {
+                stable++;
+            }
+            if (result.score < previous_score - SCORE_DROP) scale *= 1.5;
+        }
+        scale *= 1.0 + instability;
+        if (stable >= STABLE_ITERATIONS && best_share >= DOMINANT_PERCENT) scale *= 0.4;
+
+        previous_move = result.best_move;
+        previous_score = result.score;
+        return elapsed_ms >= Math.min(hard_ms, (long) (soft_ms * scale));
+    }
+
+    @Override
+    public String toString() {
+        return "soft " + soft_ms + " ms, hard " + hard_ms + " ms";
+    }
+}
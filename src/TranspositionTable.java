@@ -0,0 +1,153 @@
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+Fixed-size hash table of search results, stored in a flat long[] so there is no object per entry.
+Each entry is two longs: the position key XORed with the data, and the data itself. A reader only
+trusts an entry when (stored ^ data) gives back its key, so a write torn by another thread just reads
+as a miss. That is what lets several search threads share the table without locks.
+
+Entries sit in buckets of two. A new result replaces the entry for the same position if there is one,
+otherwise whichever entry is shallowest once entries from older searches are aged down.
+
+Data layout:
+    bits  0-21  best move (see Move)
+    bits 22-37  score, signed 16 bits
+    bits 38-45  depth
+    bits 46-47  bound
+    bits 48-53  age (search generation)
+ */
+public class TranspositionTable {
+    public static final int UPPER = 1, LOWER = 2, EXACT = 3; // never 0, so a stored entry is never 0
+
+    private static final int BUCKET_SIZE = 2;
+    private static final int LONGS_PER_ENTRY = 2;
+
+    private final long[] table;
+    private final long bucket_mask;
+    private int age;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder overwrites = new LongAdder();
+
+    public TranspositionTable(int size_mb) {
+        long bytes = Math.max(1, size_mb) * 1024L * 1024L;
+        long buckets = Long.highestOneBit(bytes / (8L * LONGS_PER_ENTRY * BUCKET_SIZE));
+        // one Java array can't hold more than 2^31 longs
+        buckets = Math.min(buckets, 1L << 29);
+        table = new long[(int) (buckets * BUCKET_SIZE * LONGS_PER_ENTRY)];
+        bucket_mask = buckets - 1;
+    }
+
+    public void clear() {
+        java.util.Arrays.fill(table, 0L);
+        age = 0;
+        hits.reset();
+        misses.reset();
+        overwrites.reset();
+    }
+
+    // called once per search so entries left from earlier searches lose out on replacement
+    public void new_search() {
+        age = (age + 1) & 63;
+    }
+
+    private int bucket_index(long key) {
+        return (int) (key & bucket_mask) * BUCKET_SIZE * LONGS_PER_ENTRY;
+    }
+
+    /*
+    Returns the data stored for the key, or 0 if there is none
+     */
+    public long probe(long key) {
+        int index = bucket_index(key);
+        for (int i = 0; i < BUCKET_SIZE; i++, index += LONGS_PER_ENTRY) {
+            long data = table[index + 1];
+            if ((table[index] ^ data) == key && data != 0) {
+                hits.increment();
+                return data;
+            }
+        }
+        misses.increment();
+        return 0L;
+    }
+
+    public void store(long key, int move, int score, int depth, int bound) {
+        int index = bucket_index(key);
+        int replace = index;
+        int worst = Integer.MAX_VALUE;
+        boolean same_position = false;
+        for (int i = 0; i < BUCKET_SIZE; i++, index += LONGS_PER_ENTRY) {
+            long data = table[index + 1];
+            if ((table[index] ^ data) == key) {
+                // same position: keep the old best move if this search didn't find one
+                if (move == Move.NONE) move = move(data);
+                replace = index;
+                same_position = true;
+                break;
+            }
+            int value = data == 0 ? Integer.MIN_VALUE : depth(data) - 8 * ((age - age(data)) & 63);
+            if (value < worst) {
+                worst = value;
+                replace = index;
+            }
+        }
+
+        if (!same_position && table[replace + 1] != 0) overwrites.increment();
+
+        long data = (move & 0x3FFFFFL)
+                | ((long) (score & 0xFFFF) << 22)
+                | ((long) (depth & 0xFF) << 38)
+                | ((long) bound << 46)
+                | ((long) age << 48);
+        table[replace] = key ^ data;
+        table[replace + 1] = data;
+    }
+
+    public static int move(long data) {
+        return (int) (data & 0x3FFFFFL);
+    }
+
+    public static int score(long data) {
+        return (short) (data >>> 22);
+    }
+
+    public static int depth(long data) {
+        return (int) ((data >>> 38) & 0xFF);
+    }
+
+    public static int bound(long data) {
+        return (int) ((data >>> 46) & 3);
+    }
+
+    private static int age(long data) {
+        return (int) ((data >>> 48) & 63);
+    }
+
+    public long hits() {
+        return hits.sum();
+    }
+
+    public long misses() {
+        return misses.sum();
+    }
+
+    public long overwrites() {
+        return overwrites.sum();
+    }
+
+    public int size_mb() {
+        return (int) ((long) table.length * 8 / (1024 * 1024));
+    }
+
+    // permille of a sample of entries that were written by the current search
+    public int hashfull() {
+        int used = 0;
+        int sample = Math.min(1000, table.length / LONGS_PER_ENTRY);
+        for (int i = 0; i < sample; i++) {
+            long data = table[i * LONGS_PER_ENTRY + 1];
+            if (data != 0 && age(data) == age) used++;
+        }
+        return used * 1000 / Math.max(1, sample);
+    }
+}
@@ -0,0 +1,278 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.Arrays;
+
+/*
+Universal Chess Interface front end, so the engine can be driven by a GUI or a match runner with no
+AWT at all. Reads commands from stdin and answers on stdout:
+    uci, isready, ucinewgame, setoption name <id> [value <x>], position [startpos | fen <fen>] [moves ...],
+    go [depth | movetime | wtime | btime | winc | binc | movestogo | nodes | infinite], stop, quit
+The search runs on its own thread so "stop" and "isready" are answered while it thinks. Each completed
+iteration is reported as an info line.
+ */
+public class Uci {
+    private static final String NAME = "ChessEngine";
+    private static final int DEFAULT_HASH_MB = 64;
+    private static final int MAX_HASH_MB = 4096;
+    private static final int MAX_THREADS = 256;
+
+    private TranspositionTable tt = new TranspositionTable(DEFAULT_HASH_MB);
+    private LazySmp smp = new LazySmp(tt, 1);
+    private Position position = new Position(Position.START_FEN);
+
+    private Thread search_thread;
+    // "go infinite" must not answer before "stop", even if the search runs out of depth first
+    private final Object stop_lock = new Object();
+    private boolean infinite;
+    private boolean stop_requested;
+
+    public static void main(String[] args) throws IOException {
+        Attacks.init();
+        new Uci().run(new BufferedReader(new InputStreamReader(System.in)));
+    }
+
+    void run(BufferedReader in) throws IOException {
+        String line;
+        while ((line = in.readLine()) != null) {
+            String[] words = line.trim().split("\\s+");
+            switch (words[0]) {
+                case "uci" -> identify();
+                case "isready" -> send("readyok");
+                case "ucinewgame" -> {
+                    wait_for_search();
+                    tt.clear();
+                }
+                case "setoption" -> set_option(words);
+                case "position" -> {
+                    wait_for_search();
+                    set_position(words);
+                }
+                case "go" -> go(words);
+                case "stop" -> stop();
+                case "quit" -> {
+                    stop();
+                    wait_for_search();
+                    return;
+                }
+                default -> {} // unknown commands are ignored, as the protocol asks
+            }
+        }
+        stop();
+        wait_for_search();
+    }
+
+    private static synchronized void send(String message) {
+        System.out.println(message);
+        System.out.flush();
+    }
+
+    private void identify() {
+        send("id name " + NAME);
+        send("id author ChessEngine authors");
+        send("option name Hash type spin default " + DEFAULT_HASH_MB + " min 1 max " + MAX_HASH_MB);
+        send("option name Threads type spin default 1 min 1 max " + MAX_THREADS);
+        send("option name Clear Hash type button");
+        SearchOptions defaults = new SearchOptions();
+        for (String name : SearchOptions.NAMES) {
+            send("option name " + name + " type check default " + defaults.get(name));
+        }
+        send("uciok");
+    }
+
+    /*
+    setoption name <id> [value <x>]; the id may contain spaces ("Clear Hash")
+     */
+    private void set_option(String[] words) {
+        wait_for_search();
+        StringBuilder name = new StringBuilder();
+        String value = null;
+        for (int i = 1; i < words.length; i++) {
+            if (words[i].equals("name")) continue;
+            if (words[i].equals("value")) {
+                value = i + 1 < words.length ? words[i + 1] : "";
+                break;
+            }
+            if (name.length() > 0) name.append(' ');
+            name.append(words[i]);
+        }
+
+        switch (name.toString()) {
+            case "Hash" -> {
+                int mb = spin_value("Hash", value, 1, MAX_HASH_MB);
+                if (mb < 0) return;
+                SearchOptions options = smp.options;
+                int threads = smp.threads();
+                tt = new TranspositionTable(mb);
+                smp.set_threads(1); // lets the old pool's threads go
+                LazySmp resized = new LazySmp(tt, threads);
+                for (String option : SearchOptions.NAMES) resized.options.set(option, options.get(option));
+                smp = resized;
+            }
+            case "Threads" -> {
+                int threads = spin_value("Threads", value, 1, MAX_THREADS);
+                if (threads > 0) smp.set_threads(threads);
+            }
+            case "Clear Hash" -> tt.clear();
+            default -> {
+                if (!Arrays.asList(SearchOptions.NAMES).contains(name.toString())) {
+                    send("info string unknown option " + name);
+                } else if (!"true".equals(value) && !"false".equals(value)) {
+                    send("info string " + name + " needs true or false, got " + describe(value));
+                } else {
+                    smp.options.set(name.toString(), value.equals("true"));
+                }
+            }
+        }
+    }
+
+    /*
+    Value of a spin option, clamped to the range advertised for it. A missing or malformed value is reported
+    and gives -1, so the option keeps its setting
+     */
+    private static int spin_value(String name, String value, int min, int max) {
+        long parsed;
+        try {
+            parsed = Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            send("info string " + name + " needs a number from " + min + " to " + max + ", got " + describe(value));
+            return -1;
+        }
+        if (parsed < min || parsed > max) {
+            parsed = Math.max(min, Math.min(max, parsed));
+            send("info string " + name + " " + value + " is out of range, using " + parsed);
+        }
+        return (int) parsed;
+    }
+
+    private static String describe(String value) {
+        return value == null || value.isEmpty() ? "no value" : value;
+    }
+
+    /*
+    position [startpos | fen <six fields>] [moves <move> ...]
+     */
+    private void set_position(String[] words) {
+        int i = 1;
+        if (i < words.length && words[i].equals("startpos")) {
+            position = new Position(Position.START_FEN);
+            i++;
+        } else if (i < words.length && words[i].equals("fen")) {
+            StringBuilder fen = new StringBuilder();
+            for (i++; i < words.length && !words[i].equals("moves"); i++) fen.append(words[i]).append(' ');
+            position = new Position(fen.toString());
+        }
+
+        if (i < words.length && words[i].equals("moves")) {
+            for (i++; i < words.length; i++) {
+                int move = parse_move(position, words[i]);
+                if (move == Move.NONE) {
+                    send("info string illegal move " + words[i]);
+                    return;
+                }
+                position.make(move);
+            }
+        }
+    }
+
+    private static int parse_move(Position position, String text) {
+        int[] moves = new int[MoveBuffer.MAX_MOVES];
+        int count = MoveGen.legal_moves(position, moves, 0);
+        for (int i = 0; i < count; i++) {
+            if (Move.to_string(moves[i]).equals(text)) return moves[i];
+        }
+        return Move.NONE;
+    }
+
+    private void go(String[] words) {
+        wait_for_search();
+
+        SearchLimits limits = new SearchLimits();
+        long time = 0, increment = 0;
+        boolean on_clock = false; // our own wtime or btime was given, whatever its value
+        int moves_to_go = 0;
+        boolean white = position.side_to_move() == Position.WHITE_SIDE;
+        boolean go_infinite = false;
+        for (int i = 1; i < words.length; i++) {
+            switch (words[i]) {
+                case "depth" -> limits.depth = Math.min(Integer.parseInt(words[++i]), MoveBuffer.MAX_PLY - 1);
+                case "movetime" -> limits.movetime_ms = Math.max(1, Long.parseLong(words[++i]) - TimeManager.MOVE_OVERHEAD_MS);
+                case "nodes" -> limits.nodes = Long.parseLong(words[++i]);
+                case "wtime" -> { long t = Long.parseLong(words[++i]); if (white) { time = t; on_clock = true; } }
+                case "btime" -> { long t = Long.parseLong(words[++i]); if (!white) { time = t; on_clock = true; } }
+                case "winc" -> { long t = Long.parseLong(words[++i]); if (white) increment = t; }
+                case "binc" -> { long t = Long.parseLong(words[++i]); if (!white) increment = t; }
+                case "movestogo" -> moves_to_go = Math.max(0, Integer.parseInt(words[++i]));
+                case "infinite" -> go_infinite = true;
+                default -> {}
+            }
+        }
+        // an empty or overdrawn clock still gets a TimeManager, whose limits bottom out at 1 ms, so the move comes at once
+        if (on_clock && !go_infinite && limits.movetime_ms == 0) limits.clock = new TimeManager(time, increment, moves_to_go);
+
+        synchronized (stop_lock) {
+            infinite = go_infinite;
+            stop_requested = false;
+        }
+        Position root = new Position(position);
+        LazySmp searcher = smp;
+        search_thread = new Thread(() -> {
+            TranspositionTable table = tt;
+            SearchResult result = searcher.think(root, limits, iteration -> {
+                send_info(iteration, table);
+                // a stop that came before the search had started is picked up here
+                synchronized (stop_lock) {
+                    if (stop_requested) searcher.stop();
+                }
+            });
+            synchronized (stop_lock) {
+                while (infinite && !stop_requested) {
+                    try {
+                        stop_lock.wait();
+                    } catch (InterruptedException e) {
+                        break;
+                    }
+                }
+            }
+            if (limits.clock != null) send("info string time used " + result.time_ms + " ms of " + limits.clock);
+            send("bestmove " + Move.to_string(result.best_move));
+        }, "uci-search");
+        search_thread.start();
+    }
+
+    private static void send_info(SearchResult result, TranspositionTable tt) {
+        StringBuilder info = new StringBuilder("info depth ").append(result.depth);
+        if (result.is_mate_score()) {
+            int plies = result.score > 0 ? Search.MATE - result.score : -Search.MATE - result.score;
+            // in moves, negative when the engine is the one getting mated
+            info.append(" score mate ").append(plies > 0 ? (plies + 1) / 2 : plies / 2);
+        } else {
+            info.append(" score cp ").append(result.score);
+        }
+        long ms = Math.max(1, result.time_ms);
+        info.append(" nodes ").append(result.nodes)
+                .append(" nps ").append(result.nodes * 1000 / ms)
+                .append(" time ").append(result.time_ms)
+                .append(" hashfull ").append(tt.hashfull())
+                .append(" pv ").append(result.pv_string());
+        send(info.toString());
+    }
+
+    private void stop() {
+        smp.stop();
+        synchronized (stop_lock) {
+            stop_requested = true;
+            stop_lock.notifyAll();
+        }
+    }
+
+    private void wait_for_search() {
+        if (search_thread == null) return;
+        try {
+            search_thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        search_thread = null;
+    }
+}
@@ -0,0 +1,46 @@
+/*
+Random keys for Zobrist hashing. A position's key is the XOR of the keys for every piece on its square,
+the side to move, the castling rights and the en passant file, so a move only has to XOR out what
+changed. The generator is seeded so keys are the same on every run
+ */
+public final class Zobrist {
+    public static final long[][] PIECES = new long[12][64];
+    public static final long BLACK_TO_MOVE;
+    public static final long[] CASTLING = new long[16];
+    public static final long[] EP_FILE = new long[8];
+
+    static {
+        long seed = 0x2545F4914F6CDD1DL;
+        for (int code = 0; code < 12; code++) {
+            for (int square = 0; square < 64; square++) {
+                seed = next(seed);
+                PIECES[code][square] = scramble(seed);
+            }
+        }
+        seed = next(seed);
+        BLACK_TO_MOVE = scramble(seed);
+        // one key per combination of rights, so a rights change is a single XOR
+        for (int rights = 0; rights < 16; rights++) {
+            seed = next(seed);
+            CASTLING[rights] = rights == 0 ? 0L : scramble(seed);
+        }
+        for (int file = 0; file < 8; file++) {
+            seed = next(seed);
+            EP_FILE[file] = scramble(seed);
+        }
+    }
+
+    private Zobrist() {}
+
+    // xorshift64* step
+    private static long next(long seed) {
+        seed ^= seed >>> 12;
+        seed ^= seed << 25;
+        seed ^= seed >>> 27;
+        return seed;
+    }
+
+    private static long scramble(long seed) {
+        return seed * 2685821657736338717L;
+    }
+}
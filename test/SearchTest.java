@@ -0,0 +1,29 @@
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SearchTest {
+    private static SearchResult search(String fen, int depth) {
+        Search search = new Search(new Position(fen), new TranspositionTable(1));
+        return search.think(SearchLimits.depth(depth));
+    }
+
+    @Test
+    void mate_on_the_hundredth_halfmove_beats_the_fifty_move_draw() {
+        String fen = "7k/5Q2/6K1/8/8/8/8/8 w - - 99 80";
+        SearchResult result = search(fen, 4);
+        assertTrue(result.score >= Search.MATE_BOUND, "score " + result.score);
+        // Qg7, Qf8 and Qe8 all mate
+        Position position = new Position(fen);
+        position.make(result.best_move);
+        assertTrue(position.in_check(), Move.to_string(result.best_move) + " gives no check");
+        assertEquals(0, MoveGen.legal_moves(position, new int[MoveBuffer.MAX_MOVES], 0));
+    }
+
+    @Test
+    void fifty_move_rule_draws_when_no_mate_is_delivered() {
+        SearchResult result = search("7k/8/8/8/8/8/R7/K7 w - - 99 80", 6);
+        assertEquals(0, result.score);
+    }
+}